@@ -0,0 +1,178 @@
+package org.estech.common.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.dto.ClassificationResult;
+import org.estech.common.exception.BusinessException;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 分类结果缓存：以图片原始字节的 SHA-256 + 模型标识 + topK 为 key。
+ * <p>
+ * 基于 Caffeine（W-TinyLFU 淘汰），缓存的是 CompletableFuture：同一张图片的并发请求共享同一次推理，
+ * 推理失败的结果不会被缓存。指标通过 CaffeineCacheMetrics 以 cache=name 标签导出。
+ */
+@Slf4j
+public class ClassificationCache {
+
+    private final String name;
+    private final boolean enabled;
+    private final long awaitTimeoutMillis;
+    private final AsyncCache<Key, ClassificationResult> cache;
+
+    public ClassificationCache(String name, ClassificationCacheConfig config) {
+        this.name = name;
+        this.enabled = config.isEnabled();
+        this.awaitTimeoutMillis = config.getAwaitTimeout().toMillis();
+        if (!enabled) {
+            this.cache = null;
+            log.info("Classification cache [{}] disabled", name);
+            return;
+        }
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(config.getTtl())
+                .recordStats();
+        if (config.getMaxBytes() > 0) {
+            builder.maximumWeight(config.getMaxBytes())
+                    .weigher((Key key, ClassificationResult result) -> estimateBytes(result));
+        } else {
+            builder.maximumSize(config.getMaxEntries());
+        }
+        this.cache = builder.buildAsync();
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, cache.synchronous(), name);
+
+        log.info("Classification cache [{}] created: maxEntries={}, maxBytes={}, ttl={}",
+                name, config.getMaxEntries(), config.getMaxBytes(), config.getTtl());
+    }
+
+    /**
+     * 同步查询；未命中时在当前线程执行 loader，同时到达的相同请求等待这一次结果（最多 await-timeout）
+     */
+    public ClassificationResult get(byte[] content, String modelId, int topK,
+                                    Callable<ClassificationResult> loader) throws Exception {
+        return get(ByteBuffer.wrap(content), modelId, topK, loader);
+    }
+
+    /**
+     * @param content 从 position 到 limit 的字节参与哈希，不改变其 position
+     */
+    public ClassificationResult get(ByteBuffer content, String modelId, int topK,
+                                    Callable<ClassificationResult> loader) throws Exception {
+        if (!enabled) {
+            return loader.call();
+        }
+        CompletableFuture<ClassificationResult> promise = new CompletableFuture<>();
+        CompletableFuture<ClassificationResult> future = cache.get(key(content, modelId, topK), (k, executor) -> promise);
+        if (future == promise) {
+            try {
+                promise.complete(loader.call());
+            } catch (Throwable t) {
+                promise.completeExceptionally(t);
+                throw t;
+            }
+        }
+        return await(future);
+    }
+
+    /**
+     * 异步查询；未命中时调用 loader 发起推理，loader 返回的 future 完成后写入缓存。
+     * 返回的是共享 future 的副本，调用方取消（如客户端断开）不会影响其他等待同一结果的请求。
+     */
+    public CompletableFuture<ClassificationResult> getAsync(byte[] content, String modelId, int topK,
+                                                            Callable<CompletableFuture<ClassificationResult>> loader) {
+        if (!enabled) {
+            return callAsync(loader);
+        }
+        CompletableFuture<ClassificationResult> promise = new CompletableFuture<>();
+        CompletableFuture<ClassificationResult> future =
+                cache.get(key(ByteBuffer.wrap(content), modelId, topK), (k, executor) -> promise);
+        if (future == promise) {
+            callAsync(loader).whenComplete((result, error) -> {
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(result);
+                }
+            });
+        }
+        return future.copy();
+    }
+
+    public String getName() { return name; }
+    public boolean isEnabled() { return enabled; }
+
+    public void invalidateAll() {
+        if (enabled) {
+            cache.synchronous().invalidateAll();
+        }
+    }
+
+    private static CompletableFuture<ClassificationResult> callAsync(
+            Callable<CompletableFuture<ClassificationResult>> loader) {
+        try {
+            return loader.call();
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+    }
+
+    private ClassificationResult await(CompletableFuture<ClassificationResult> future) throws Exception {
+        try {
+            return future.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new BusinessException(ErrorCodes.SERVICE_BUSY,
+                    "Classification did not complete within " + awaitTimeoutMillis + " ms");
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof Exception ex) {
+                throw ex;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * SHA-256 而不是非加密哈希：上传内容由外部控制，构造碰撞即可让违规图片命中正常图片的缓存结果
+     */
+    private static Key key(ByteBuffer content, String modelId, int topK) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(content.duplicate());
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new Key(modelId, topK, hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+
+    /**
+     * 粗略估算一个结果占用的堆内存
+     */
+    private static int estimateBytes(ClassificationResult result) {
+        int bytes = 160;  // Key + 结果对象 + map 本身
+        if (result.getTopK() != null) {
+            for (Map.Entry<String, Double> entry : result.getTopK().entrySet()) {
+                bytes += 80 + entry.getKey().length();
+            }
+        }
+        return bytes;
+    }
+
+    private record Key(String modelId, int topK, long h0, long h1, long h2, long h3) {}
+}
@@ -0,0 +1,44 @@
+package org.estech.common.cache;
+
+import java.time.Duration;
+
+/**
+ * 分类结果缓存配置
+ */
+public class ClassificationCacheConfig {
+
+    private final boolean enabled;
+    private final long maxEntries;
+    private final long maxBytes;
+    private final Duration ttl;
+    private final Duration awaitTimeout;
+
+    /**
+     * @param enabled      是否启用缓存
+     * @param maxEntries   最多缓存的结果条数（maxBytes > 0 时忽略）
+     * @param maxBytes     按估算内存占用限制容量，0 表示按条数限制
+     * @param ttl          写入后的存活时间
+     * @param awaitTimeout 同步查询等待其他请求在途推理的上限
+     */
+    public ClassificationCacheConfig(boolean enabled, long maxEntries, long maxBytes, Duration ttl,
+                                     Duration awaitTimeout) {
+        if (enabled && maxEntries <= 0 && maxBytes <= 0) {
+            throw new IllegalArgumentException("maxEntries or maxBytes must be positive");
+        }
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        this.awaitTimeout = awaitTimeout;
+    }
+
+    public static ClassificationCacheConfig disabled() {
+        return new ClassificationCacheConfig(false, 0, 0, Duration.ZERO, Duration.ZERO);
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public long getMaxEntries() { return maxEntries; }
+    public long getMaxBytes() { return maxBytes; }
+    public Duration getTtl() { return ttl; }
+    public Duration getAwaitTimeout() { return awaitTimeout; }
+}
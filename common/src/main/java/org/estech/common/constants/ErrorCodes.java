@@ -6,4 +6,5 @@ public class ErrorCodes {
     public static final String INVALID_REQUEST = "E400";
     public static final String MODEL_ERROR = "E600";
     public static final String FILE_ERROR = "E700";
+    public static final String SERVICE_BUSY = "E503";
 }
@@ -0,0 +1,68 @@
+package org.estech.gateway.service;
+
+import org.estech.gateway.balancer.Upstream;
+import org.estech.gateway.model.TraceContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关每个请求都要走的两步：生成链路 ID、拼接下游地址。
+ * 原实现（UUID.randomUUID、每次 replaceAll + URI.create） vs {@link TraceService} 与预解析的 {@link Upstream}。
+ * 多线程运行，用来观察 SecureRandom 在并发下的竞争。
+ * <p>
+ * mvn -Pbench -pl gateway test-compile exec:exec -Djmh.include=GatewayHotPath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class GatewayHotPathBenchmark {
+
+    private static final String BASE_URL = "http://localhost:8082";
+    private static final String PATH = "/api/classify";
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    private final TraceService traceService = new TraceService(0.01);
+    private final Upstream upstream = new Upstream("api", BASE_URL);
+
+    @Benchmark
+    public String legacyTraceId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public TraceContext newTrace() {
+        return traceService.resolve(null);
+    }
+
+    @Benchmark
+    public TraceContext propagatedTrace() {
+        return traceService.resolve(TRACEPARENT);
+    }
+
+    @Benchmark
+    public URI legacyTargetUri() {
+        String targetUrl = BASE_URL + "/" + PATH.replaceAll("^/+", "");
+        return URI.create(targetUrl);
+    }
+
+    @Benchmark
+    public URI precompiledTargetUri() {
+        return upstream.resolve(PATH);
+    }
+}
@@ -0,0 +1,50 @@
+package org.estech.gateway.balancer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 最近 N 次请求延迟的滑动样本，用于按分位数计算对冲延迟。
+ * <p>
+ * 写入只是一次数组赋值；分位数需要排序，结果缓存 100ms，读多写多的场景下每秒最多排序 10 次。
+ */
+public class LatencyTracker {
+
+    private static final int SIZE = 1024;
+    private static final long REFRESH_NANOS = 100_000_000L;
+
+    private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+    private final AtomicLong count = new AtomicLong();
+    private volatile long cachedNanos = -1;
+    private volatile long cachedAt;
+    private volatile double cachedPercentile;
+
+    public void record(long nanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % SIZE), nanos);
+    }
+
+    /**
+     * 最近样本的 p 分位；样本少于 minSamples 时返回 null
+     */
+    public Duration percentile(double p, int minSamples) {
+        int n = (int) Math.min(count.get(), SIZE);
+        if (n < minSamples) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (cachedNanos < 0 || cachedPercentile != p || now - cachedAt > REFRESH_NANOS) {
+            long[] sorted = new long[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            cachedNanos = sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+            cachedPercentile = p;
+            cachedAt = now;
+        }
+        return Duration.ofNanos(cachedNanos);
+    }
+}
@@ -0,0 +1,133 @@
+package org.estech.gateway.balancer;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 路由下的一个实例：在途请求数、延迟 EWMA、连续失败次数与摘除状态。
+ * <p>
+ * 统计值只用于选择实例，允许并发更新时的少量误差，不加锁。
+ * 地址在加载 policy.yaml 时解析好（scheme / host / port / 基础路径），转发时只拼接路径，不再解析 URL。
+ */
+public class Upstream {
+
+    /** EWMA 平滑系数，越大越跟随最近的延迟 */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String route;
+    private final String url;
+    private final String scheme;
+    private final String host;
+    private final int port;
+    private final String basePath;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile double ewmaMillis;
+    private volatile long ejectedUntilNanos;
+    private volatile boolean ejected;
+
+    public Upstream(String route, String url) {
+        this.route = route;
+        this.url = url.replaceAll("/+$", "");
+        URI base = URI.create(this.url);
+        this.scheme = base.getScheme();
+        this.host = base.getHost();
+        this.port = base.getPort();
+        this.basePath = base.getRawPath() == null ? "" : base.getRawPath();
+    }
+
+    public String getScheme() { return scheme; }
+    public String getHost() { return host; }
+    public int getPort() { return port; }
+
+    /**
+     * 基础路径与请求路径拼接，中间只保留一个斜杠；path 中的查询串不包含在内，见 {@link #query(String)}
+     */
+    public String path(String path) {
+        int end = path.indexOf('?');
+        if (end < 0) {
+            end = path.length();
+        }
+        int start = 0;
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        return basePath + "/" + path.substring(start, end);
+    }
+
+    /**
+     * path 中 '?' 之后的查询串，没有时为 null
+     */
+    public static String query(String path) {
+        int start = path.indexOf('?');
+        return start < 0 ? null : path.substring(start + 1);
+    }
+
+    /**
+     * 该实例上 path 对应的完整地址，path 可以带查询串
+     */
+    public URI resolve(String path) {
+        try {
+            return new URI(scheme, null, host, port, path(path), query(path), null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid path: " + path, e);
+        }
+    }
+
+    public String getRoute() { return route; }
+    public String getUrl() { return url; }
+    public int getInFlight() { return inFlight.get(); }
+    public double getEwmaMillis() { return ewmaMillis; }
+
+    /**
+     * 选择代价：(在途数 + 1) x 延迟 EWMA。还没有延迟样本时按 1ms 计，让新实例尽快拿到流量并产生样本。
+     */
+    double cost() {
+        double latency = ewmaMillis > 0 ? ewmaMillis : 1.0;
+        return (inFlight.get() + 1) * latency;
+    }
+
+    public boolean isEjected(long nowNanos) {
+        return ejected && nowNanos - ejectedUntilNanos < 0;
+    }
+
+    void onStart() {
+        inFlight.incrementAndGet();
+    }
+
+    void onEnd() {
+        inFlight.decrementAndGet();
+    }
+
+    void recordLatency(long nanos) {
+        double sample = nanos / 1_000_000.0;
+        double current = ewmaMillis;
+        ewmaMillis = current == 0 ? sample : current + EWMA_ALPHA * (sample - current);
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        ejected = false;
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @return 本次失败导致实例被摘除时返回 true
+     */
+    boolean onFailure(int ejectAfterFailures, long ejectNanos) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= ejectAfterFailures && !isEjected(System.nanoTime())) {
+            ejectedUntilNanos = System.nanoTime() + ejectNanos;
+            ejected = true;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return route + "@" + url;
+    }
+}
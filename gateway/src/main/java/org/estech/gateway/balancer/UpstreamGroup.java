@@ -0,0 +1,147 @@
+package org.estech.gateway.balancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.model.RouteConfig;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 一个路由的全部实例与选择策略：
+ * <ul>
+ *   <li>round-robin：轮询；</li>
+ *   <li>p2c：随机取两个实例，选 (在途数 + 1) x 延迟 EWMA 较小的一个；</li>
+ *   <li>least-outstanding：在途请求最少的实例，相同时比较延迟 EWMA。</li>
+ * </ul>
+ * 被动健康检查：连接错误、超时、5xx 连续达到 eject-after-failures 次的实例摘除 eject-duration，
+ * 到期后重新参与选择，再失败一次即再次摘除。所有实例都被摘除时退回到全部实例，避免整条路由不可用。
+ */
+@Slf4j
+public class UpstreamGroup {
+
+    private final RouteConfig config;
+    private final List<Upstream> upstreams;
+    private final long ejectNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public UpstreamGroup(RouteConfig config) {
+        if (config.getUrls().isEmpty()) {
+            throw new IllegalArgumentException("Route [" + config.getName() + "] has no upstream url");
+        }
+        this.config = config;
+        this.upstreams = config.getUrls().stream().map(url -> new Upstream(config.getName(), url)).toList();
+        this.ejectNanos = config.getEjectDuration().toNanos();
+    }
+
+    public List<Upstream> getUpstreams() { return upstreams; }
+
+    /**
+     * 每次订阅时选择一个实例，用它构造请求并统计在途数、延迟与失败；
+     * 因此外层重试（重新订阅）会重新选择实例。
+     */
+    public <T> Mono<T> execute(Function<Upstream, Mono<T>> request) {
+        return Mono.defer(() -> call(choose(), request));
+    }
+
+    /**
+     * 向指定实例发送请求，统计在途数、延迟与失败（被取消时只减少在途数）
+     */
+    public <T> Mono<T> call(Upstream upstream, Function<Upstream, Mono<T>> request) {
+        long start = System.nanoTime();
+        upstream.onStart();
+        return request.apply(upstream)
+                .doOnSuccess(v -> {
+                    upstream.recordLatency(System.nanoTime() - start);
+                    upstream.onSuccess();
+                })
+                .doOnError(e -> {
+                    upstream.recordLatency(System.nanoTime() - start);
+                    if (!isInstanceFailure(e)) {
+                        upstream.onSuccess();
+                    } else if (upstream.onFailure(config.getEjectAfterFailures(), ejectNanos)) {
+                        log.warn("Upstream {} ejected for {} after {} consecutive failures, last: {}",
+                                upstream, config.getEjectDuration(), config.getEjectAfterFailures(), e.toString());
+                    }
+                })
+                .doFinally(signal -> upstream.onEnd());
+    }
+
+    public Upstream choose() {
+        return choose(available());
+    }
+
+    /**
+     * 在 excluded 以外的可用实例中选择一个（用于对冲），没有其他可用实例时返回 null
+     */
+    public Upstream chooseOther(Upstream excluded) {
+        List<Upstream> candidates = new ArrayList<>(available());
+        candidates.remove(excluded);
+        return candidates.isEmpty() ? null : choose(candidates);
+    }
+
+    private Upstream choose(List<Upstream> candidates) {
+        int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (config.getBalancer()) {
+            case RouteConfig.BALANCER_P2C -> {
+                int i = random.nextInt(size);
+                int j = random.nextInt(size - 1);
+                if (j >= i) {
+                    j++;
+                }
+                Upstream a = candidates.get(i);
+                Upstream b = candidates.get(j);
+                yield a.cost() <= b.cost() ? a : b;
+            }
+            case RouteConfig.BALANCER_LEAST_OUTSTANDING -> {
+                // 从随机位置开始扫描，在途数相同的实例之间不会总是选中第一个
+                int offset = random.nextInt(size);
+                Upstream best = null;
+                for (int k = 0; k < size; k++) {
+                    Upstream candidate = candidates.get((offset + k) % size);
+                    if (best == null || candidate.getInFlight() < best.getInFlight()
+                            || (candidate.getInFlight() == best.getInFlight()
+                            && candidate.getEwmaMillis() < best.getEwmaMillis())) {
+                        best = candidate;
+                    }
+                }
+                yield best;
+            }
+            default -> candidates.get(Math.floorMod(next.getAndIncrement(), size));
+        };
+    }
+
+    private List<Upstream> available() {
+        if (upstreams.size() == 1) {
+            return upstreams;
+        }
+        long now = System.nanoTime();
+        List<Upstream> healthy = new ArrayList<>(upstreams.size());
+        for (Upstream upstream : upstreams) {
+            if (!upstream.isEjected(now)) {
+                healthy.add(upstream);
+            }
+        }
+        return healthy.isEmpty() ? upstreams : healthy;
+    }
+
+    /**
+     * 只有连接错误、超时与 5xx 说明实例本身有问题；4xx 是请求的问题，不影响实例健康
+     */
+    static boolean isInstanceFailure(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+}
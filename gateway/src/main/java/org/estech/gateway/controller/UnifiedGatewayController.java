@@ -1,8 +1,13 @@
 package org.estech.gateway.controller;
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.balancer.Upstream;
 import org.estech.gateway.model.ComputeRequest;
+import org.estech.gateway.model.TraceContext;
+import org.estech.gateway.ratelimit.RequestRejectedException;
 import org.estech.gateway.service.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
@@ -22,27 +27,28 @@ import reactor.core.publisher.Mono;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 public class UnifiedGatewayController {
 
-    private final PolicyService policyService;
     private final MetricsService metricsService;
     private final TraceService traceService;
     private final SecurityService securityService;
     private final CircuitService circuitService;
-
-    @Value("${gateway.rate-limit:100}")
-    private int rateLimit;
+    private final RouteTableService routeTableService;
+    private final RateLimitService rateLimitService;
+    private final HedgeService hedgeService;
 
     @Value("${gateway.timeout-seconds:30}")
     private int timeoutSeconds;
 
-    private final AtomicInteger activeRequests = new AtomicInteger(0);
-    private final WebClient webClient = WebClient.builder().build();
+    /**
+     * multipart 透传模式的路由 Header，也可以用同名的 impl / path 查询参数
+     */
+    private static final String ROUTE_IMPL_HEADER = "X-Gateway-Impl";
+    private static final String ROUTE_PATH_HEADER = "X-Gateway-Path";
 
     @RequestMapping(value = "/v1/run", method = {RequestMethod.POST, RequestMethod.GET})
     public Mono<ResponseEntity<String>> run(
@@ -51,29 +57,43 @@ public class UnifiedGatewayController {
             ServerWebExchange exchange) {
 
         long start = System.nanoTime();
-        String traceId = traceService.generateTraceId();
+        TraceContext trace = traceService.resolve(request.getHeaders().getFirst(TraceContext.TRACEPARENT));
+        String traceId = trace.traceId();
 
         // 1. 鉴权
-        if (token == null || !securityService.validateToken(token.replace("Bearer ", ""))) {
+        String bearer = token != null ? token.replace("Bearer ", "") : null;
+        if (bearer == null || !securityService.validateToken(bearer)) {
             return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or missing token"));
         }
 
-        // 2. 限流
-        if (activeRequests.incrementAndGet() > rateLimit) {
-            activeRequests.decrementAndGet();
-            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("Too many requests"));
+        // 2. 客户端限速（路由限速与并发上限在确定路由后检查，见 RateLimitService.guardRoute）
+        try {
+            rateLimitService.checkClient(securityService.subject(bearer));
+        } catch (RequestRejectedException e) {
+            return Mono.just(rejected(e));
         }
 
         // 3. 构建 ServerRequest
         ServerRequest serverRequest = ServerRequest.create(exchange, HandlerStrategies.withDefaults().messageReaders());
         MediaType contentType = request.getHeaders().getContentType();
-        log.info("[traceId={}] Incoming request: {} {}, Content-Type: {}", traceId, request.getMethod(), request.getURI(), contentType);
+        // 请求日志按 gateway.logging.sample-rate 采样，拒绝与失败日志不采样
+        if (traceService.shouldLog(trace)) {
+            log.info("[traceId={}] Incoming request: {} {}, Content-Type: {}", traceId, request.getMethod(), request.getURI(), contentType);
+        }
 
         Mono<String> responseMono;
 
         // 4. 处理请求
-        if (contentType != null && contentType.isCompatibleWith(MediaType.MULTIPART_FORM_DATA)) {
-            responseMono = handleMultipart(exchange, traceId);
+        boolean multipart = contentType != null && contentType.isCompatibleWith(MediaType.MULTIPART_FORM_DATA);
+        String streamImpl = multipart ? routingParam(request, ROUTE_IMPL_HEADER, "impl") : null;
+        String streamPath = multipart ? routingParam(request, ROUTE_PATH_HEADER, "path") : null;
+        boolean streaming = streamImpl != null && streamPath != null;
+
+        if (streaming) {
+            // 路由信息在 Header / Query 中：原样透传请求体，不解析表单
+            responseMono = handleMultipartStream(request, streamImpl, streamPath, trace);
+        } else if (multipart) {
+            responseMono = handleMultipart(exchange, trace);
         } else {
             // 处理 JSON 或 GET 请求
             responseMono = serverRequest.bodyToMono(ComputeRequest.class)
@@ -94,72 +114,121 @@ public class UnifiedGatewayController {
                         fallbackReq.setInput(inputMap);
 
                         if (fallbackReq.getImpl() != null && fallbackReq.getPath() != null) {
-                            log.info("[traceId={}] Extracted params from Query: impl={}, path={}, business_params={}",
+                            log.debug("[traceId={}] Extracted params from Query: impl={}, path={}, business_params={}",
                                     traceId, fallbackReq.getImpl(), fallbackReq.getPath(), inputMap.keySet());
                             return Mono.just(fallbackReq);
                         }
                         return Mono.error(new RuntimeException("Empty JSON body and missing path parameters"));
                     }))
-                    .flatMap(req -> handleJson(req, traceId));
+                    .flatMap(req -> handleJson(req, trace));
         }
 
-        // 5. 装饰熔断、监控
-        return circuitService.decorate(responseMono)
+        // 5. 监控（熔断、舱壁与重试按路由在各自的调用上装饰）
+        return responseMono
                 .map(ResponseEntity::ok)
                 .onErrorResume(err -> {
+                    if (err instanceof RequestRejectedException rejected) {
+                        log.warn("[traceId={}] Rejected: {}", traceId, rejected.getMessage());
+                        return Mono.just(rejected(rejected));
+                    }
                     metricsService.recordError(start);
-                    // 如果熔断器开启，记录更详细的告警
-                    if (err.getMessage().contains("OPEN")) {
-                        log.error("[traceId={}] 🛡️ Circuit Breaker is OPEN. Blocking request.", traceId);
-                    } else {
-                        log.error("[traceId={}] Forwarding failed: {}", traceId, err.getMessage());
+                    if (err instanceof CallNotPermittedException || err instanceof BulkheadFullException) {
+                        log.error("[traceId={}] 🛡️ {}", traceId, err.getMessage());
+                        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(err.getMessage()));
                     }
+                    log.error("[traceId={}] Forwarding failed: {}", traceId, err.getMessage());
                     return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(err.getMessage()));
                 })
-                .doFinally(sig -> {
-                    activeRequests.decrementAndGet();
-                    metricsService.recordLatency(start);
-                });
+                .doFinally(sig -> metricsService.recordLatency(start));
     }
 
-    private Mono<String> handleJson(ComputeRequest req, String traceId) {
-        String baseUrl = policyService.getRoute(req.getImpl());
-        if (baseUrl == null) return Mono.error(new RuntimeException("Unknown service: " + req.getImpl()));
+    private static ResponseEntity<String> rejected(RequestRejectedException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    private Mono<String> handleJson(ComputeRequest req, TraceContext trace) {
+        // 整个请求（包括重试）使用同一份路由组件，热加载不会让它看到新旧混合或已关闭的连接池
+        RouteRuntime route = routeTableService.get(req.getImpl());
+        if (route == null) return Mono.error(new RuntimeException("Unknown service: " + req.getImpl()));
 
-        // 路径清洗，防止双斜杠
-        String targetUrl = baseUrl.replaceAll("/+$", "") + "/" + req.getPath().replaceAll("^/+", "");
         HttpMethod method = HttpMethod.valueOf(req.getMethod() != null ? req.getMethod().toUpperCase() : "POST");
 
-        log.info("[traceId={}] → Forwarding to: {} {}", traceId, method, targetUrl);
+        // 每次订阅（包括重试）由负载均衡重新选择实例；幂等路由慢时向另一个实例对冲
+        return circuitService.decorate(route.name(), rateLimitService.guardRoute(route, hedgeService.execute(route, upstream -> {
+            log.debug("[traceId={}] → Forwarding to: {} {} {}", trace, method, upstream.getUrl(), req.getPath());
 
-        WebClient.RequestBodySpec requestSpec = webClient.method(method)
-                .uri(uriBuilder -> {
-                    java.net.URI uri = java.net.URI.create(targetUrl);
-                    uriBuilder.scheme(uri.getScheme()).host(uri.getHost()).port(uri.getPort()).path(uri.getPath());
+            WebClient.RequestBodySpec requestSpec = route.client().method(method)
+                    .uri(uriBuilder -> {
+                        // 实例地址已在加载时解析，这里只拼接路径；path 自带的查询串单独设置，避免 '?' 被编码进路径
+                        uriBuilder.scheme(upstream.getScheme()).host(upstream.getHost()).port(upstream.getPort())
+                                .path(upstream.path(req.getPath()));
+                        String query = Upstream.query(req.getPath());
+                        if (query != null) {
+                            uriBuilder.query(query);
+                        }
 
-                    // GET 请求时，将 input Map 转换为 URL 参数
-                    if (HttpMethod.GET.equals(method) && req.getInput() instanceof Map<?, ?> map) {
-                        map.forEach((k, v) -> { if (v != null) uriBuilder.queryParam(k.toString(), v); });
-                    }
-                    return uriBuilder.build();
-                })
-                .header("X-Trace-Id", traceId);
+                        // GET 请求时，将 input Map 转换为 URL 参数
+                        if (HttpMethod.GET.equals(method) && req.getInput() instanceof Map<?, ?> map) {
+                            map.forEach((k, v) -> { if (v != null) uriBuilder.queryParam(k.toString(), v); });
+                        }
+                        return uriBuilder.build();
+                    })
+                    .header("X-Trace-Id", trace.traceId())
+                    .header(TraceContext.TRACEPARENT, trace.toTraceparent());
 
-        // 非 GET 请求添加 Body
-        if (!HttpMethod.GET.equals(method)) {
-            requestSpec.contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(req.getInput() != null ? req.getInput() : "");
-        }
+            // 非 GET 请求添加 Body
+            if (!HttpMethod.GET.equals(method)) {
+                requestSpec.contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(req.getInput() != null ? req.getInput() : "");
+            }
 
-        return requestSpec.retrieve()
-                .onStatus(HttpStatusCode::is4xxClientError, resp ->
-                        resp.bodyToMono(String.class).flatMap(msg ->
-                                Mono.error(new RuntimeException("Downstream 4xx error: " + msg))))
-                .bodyToMono(String.class)
-                .timeout(Duration.ofSeconds(timeoutSeconds));
+            return requestSpec.retrieve()
+                    .onStatus(HttpStatusCode::is4xxClientError, resp ->
+                            resp.bodyToMono(String.class).flatMap(msg ->
+                                    Mono.error(new RuntimeException("Downstream 4xx error: " + msg))))
+                    .bodyToMono(String.class)
+                    .timeout(Duration.ofSeconds(timeoutSeconds));
+        })), true);
     }
 
-    private Mono<String> handleMultipart(ServerWebExchange exchange, String traceId) {
+    /**
+     * multipart 透传：请求体以 DataBuffer 流的形式原样转发给下游（Content-Type 中的 boundary 一并保留），
+     * 由 Netty 按下游写入速度向客户端请求数据，网关不解析、不缓存表单，每个上传占用的内存与文件大小无关。
+     */
+    private Mono<String> handleMultipartStream(ServerHttpRequest request, String impl, String path, TraceContext trace) {
+        RouteRuntime route = routeTableService.get(impl);
+        if (route == null) return Mono.error(new IllegalArgumentException("Unknown service: " + impl));
+
+        HttpHeaders incoming = request.getHeaders();
+        // 透传的请求体只能读取一次，不能重试
+        return circuitService.decorate(impl, rateLimitService.guardRoute(route, route.upstreams().execute(upstream -> {
+            log.debug("[traceId={}] Streaming Multipart → {} {}", trace, upstream.getUrl(), path);
+
+            return route.client().post()
+                    .uri(upstream.resolve(path))
+                    .headers(headers -> {
+                        headers.setContentType(incoming.getContentType());
+                        if (incoming.getContentLength() >= 0) {
+                            headers.setContentLength(incoming.getContentLength());
+                        }
+                    })
+                    .header("X-Trace-Id", trace.traceId())
+                    .header(TraceContext.TRACEPARENT, trace.toTraceparent())
+                    .body(BodyInserters.fromDataBuffers(request.getBody()))
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .timeout(Duration.ofSeconds(timeoutSeconds));
+        })), false);
+    }
+
+    private static String routingParam(ServerHttpRequest request, String header, String queryParam) {
+        String value = request.getHeaders().getFirst(header);
+        return value != null ? value : request.getQueryParams().getFirst(queryParam);
+    }
+
+    private Mono<String> handleMultipart(ServerWebExchange exchange, TraceContext trace) {
         return exchange.getMultipartData().flatMap(parts -> {
             if (parts.isEmpty()) {
                 return Mono.error(new RuntimeException("Multipart data is empty (Content-Length was 0)"));
@@ -177,21 +246,23 @@ public class UnifiedGatewayController {
 
             if (impl == null || path == null) return Mono.error(new IllegalArgumentException("Multipart missing impl/path"));
 
-            String baseUrl = policyService.getRoute(impl);
-            if (baseUrl == null) return Mono.error(new IllegalArgumentException("Unknown service: " + impl));
+            RouteRuntime route = routeTableService.get(impl);
+            if (route == null) return Mono.error(new IllegalArgumentException("Unknown service: " + impl));
 
-            String targetUrl = baseUrl.replaceAll("/+$", "") + "/" + path.replaceAll("^/+", "");
-            log.info("[traceId={}] Forwarding Multipart → {}", traceId, targetUrl);
+            return circuitService.decorate(impl, rateLimitService.guardRoute(route, route.upstreams().execute(upstream -> {
+                log.debug("[traceId={}] Forwarding Multipart → {} {}", trace, upstream.getUrl(), path);
 
-            return webClient.post()
-                    .uri(targetUrl)
-                    // 【修复点】：移除 .contentType(MediaType.MULTIPART_FORM_DATA)
-                    // 让 WebClient 根据 Body 中的 Multipart 数据自动生成带 Boundary 的 Header
-                    .header("X-Trace-Id", traceId)
-                    .body(BodyInserters.fromMultipartData(builder.build()))
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(timeoutSeconds));
+                return route.client().post()
+                        .uri(upstream.resolve(path))
+                        // 【修复点】：移除 .contentType(MediaType.MULTIPART_FORM_DATA)
+                        // 让 WebClient 根据 Body 中的 Multipart 数据自动生成带 Boundary 的 Header
+                        .header("X-Trace-Id", trace.traceId())
+                        .header(TraceContext.TRACEPARENT, trace.toTraceparent())
+                        .body(BodyInserters.fromMultipartData(builder.build()))
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .timeout(Duration.ofSeconds(timeoutSeconds));
+            })), true);
         });
     }
 
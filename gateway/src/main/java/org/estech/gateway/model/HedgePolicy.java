@@ -0,0 +1,34 @@
+package org.estech.gateway.model;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 对冲请求设置（只对 idempotent 路由生效）：主请求超过该路由最近延迟的 percentile 分位仍未返回时，
+ * 向另一个实例再发一次，先返回的结果生效，另一个取消。
+ *
+ * @param percentile 触发对冲的延迟分位，例如 0.95
+ * @param minDelay   对冲延迟下限；延迟样本不足时也使用该值
+ * @param budget     对冲请求数与请求数之比的上限，例如 0.05
+ */
+public record HedgePolicy(double percentile, Duration minDelay, double budget) {
+
+    public static HedgePolicy defaults() {
+        return new HedgePolicy(0.95, Duration.ofMillis(20), 0.05);
+    }
+
+    /**
+     * 解析 policy.yaml 中的 hedge 块，未写的字段取 base
+     */
+    public static HedgePolicy from(Object value, HedgePolicy base) {
+        if (!(value instanceof Map<?, ?> map)) {
+            return base;
+        }
+        return new HedgePolicy(
+                map.containsKey("percentile") ? Double.parseDouble(String.valueOf(map.get("percentile"))) : base.percentile(),
+                map.containsKey("min-delay") ? DurationStyle.detectAndParse(String.valueOf(map.get("min-delay"))) : base.minDelay(),
+                map.containsKey("budget") ? Double.parseDouble(String.valueOf(map.get("budget"))) : base.budget());
+    }
+}
@@ -0,0 +1,188 @@
+package org.estech.gateway.model;
+
+import lombok.Getter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * policy.yaml 中一个路由的下游实例、负载均衡与连接池设置。
+ * <p>
+ * 路由可以只写地址（沿用 defaults），也可以写成对象覆盖部分设置；多个实例写在 urls 中，按 balancer 负载均衡：
+ * <pre>
+ * defaults:
+ *   max-connections: 200
+ * routes:
+ *   api: http://localhost:8082
+ *   flux:
+ *     urls: [http://10.0.0.1:8081, http://10.0.0.2:8081]
+ *     balancer: least-outstanding
+ *     idempotent: true
+ *     hedge: {percentile: 0.95, min-delay: 20ms, budget: 0.05}
+ *   rpc:
+ *     url: http://localhost:8083
+ *     max-connections: 32
+ *     protocol: h2c
+ * </pre>
+ */
+@Getter
+public class RouteConfig {
+
+    public static final String PROTOCOL_HTTP1 = "http1";
+    public static final String PROTOCOL_H2C = "h2c";
+
+    public static final String BALANCER_ROUND_ROBIN = "round-robin";
+    public static final String BALANCER_P2C = "p2c";
+    public static final String BALANCER_LEAST_OUTSTANDING = "least-outstanding";
+
+    private final String name;
+    private final List<String> urls;
+    /** 实例选择策略：round-robin / p2c / least-outstanding */
+    private final String balancer;
+    /** 连续失败（连接错误、超时、5xx）多少次后摘除实例 */
+    private final int ejectAfterFailures;
+    private final Duration ejectDuration;
+    /** 整条路由每秒允许的请求数，0 表示不限 */
+    private final double rateLimit;
+    /** 路由限速允许的突发请求数 */
+    private final int burst;
+    /** 请求可以安全地重复发送（分类等只读接口），允许对冲 */
+    private final boolean idempotent;
+    private final HedgePolicy hedge;
+    /** 每个实例的连接池最大连接数（Reactor Netty 按远端地址分池；h2c 下每个连接可复用多个 stream） */
+    private final int maxConnections;
+    /** 等待连接的请求队列上限，超出直接失败 */
+    private final int pendingAcquireMax;
+    private final Duration pendingAcquireTimeout;
+    /** 空闲超过该时间的连接被回收，应小于下游的 keep-alive 超时 */
+    private final Duration maxIdleTime;
+    private final Duration maxLifeTime;
+    /** 后台清理空闲连接的间隔，0 表示只在获取连接时检查 */
+    private final Duration evictInterval;
+    private final String protocol;
+    private final boolean compression;
+    private final Duration connectTimeout;
+    /** 从发出请求到收到响应头的超时 */
+    private final Duration responseTimeout;
+
+    public RouteConfig(String name, List<String> urls, String balancer, int ejectAfterFailures, Duration ejectDuration,
+                       double rateLimit, int burst, boolean idempotent, HedgePolicy hedge,
+                       int maxConnections, int pendingAcquireMax, Duration pendingAcquireTimeout,
+                       Duration maxIdleTime, Duration maxLifeTime, Duration evictInterval,
+                       String protocol, boolean compression, Duration connectTimeout, Duration responseTimeout) {
+        if (!PROTOCOL_HTTP1.equals(protocol) && !PROTOCOL_H2C.equals(protocol)) {
+            throw new IllegalArgumentException("Unsupported protocol for route [" + name + "]: " + protocol);
+        }
+        if (!BALANCER_ROUND_ROBIN.equals(balancer) && !BALANCER_P2C.equals(balancer)
+                && !BALANCER_LEAST_OUTSTANDING.equals(balancer)) {
+            throw new IllegalArgumentException("Unsupported balancer for route [" + name + "]: " + balancer);
+        }
+        this.name = name;
+        this.urls = List.copyOf(urls);
+        this.balancer = balancer;
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejectDuration = ejectDuration;
+        this.rateLimit = rateLimit;
+        this.burst = burst;
+        this.idempotent = idempotent;
+        this.hedge = hedge;
+        this.maxConnections = maxConnections;
+        this.pendingAcquireMax = pendingAcquireMax;
+        this.pendingAcquireTimeout = pendingAcquireTimeout;
+        this.maxIdleTime = maxIdleTime;
+        this.maxLifeTime = maxLifeTime;
+        this.evictInterval = evictInterval;
+        this.protocol = protocol;
+        this.compression = compression;
+        this.connectTimeout = connectTimeout;
+        this.responseTimeout = responseTimeout;
+    }
+
+    /**
+     * 是否对该路由启用对冲：需要声明为幂等、对冲预算大于 0，并且至少有两个实例
+     */
+    public boolean isHedgingEnabled() {
+        return idempotent && hedge.budget() > 0 && urls.size() > 1;
+    }
+
+    /**
+     * 实例列表与负载均衡设置是否相同（热加载时相同则保留实例组及其统计）
+     */
+    public boolean sameUpstreams(RouteConfig other) {
+        return urls.equals(other.urls) && balancer.equals(other.balancer)
+                && ejectAfterFailures == other.ejectAfterFailures && ejectDuration.equals(other.ejectDuration);
+    }
+
+    /**
+     * 连接池与 HTTP 客户端设置是否相同（热加载时相同则保留已预热的连接池）
+     */
+    public boolean sameClient(RouteConfig other) {
+        return maxConnections == other.maxConnections && pendingAcquireMax == other.pendingAcquireMax
+                && pendingAcquireTimeout.equals(other.pendingAcquireTimeout) && maxIdleTime.equals(other.maxIdleTime)
+                && maxLifeTime.equals(other.maxLifeTime) && evictInterval.equals(other.evictInterval)
+                && protocol.equals(other.protocol) && compression == other.compression
+                && connectTimeout.equals(other.connectTimeout) && responseTimeout.equals(other.responseTimeout);
+    }
+
+    /**
+     * 未配置 defaults 时使用的设置
+     */
+    public static RouteConfig defaults() {
+        return new RouteConfig("defaults", List.of(), BALANCER_P2C, 3, Duration.ofSeconds(30), 0, 1,
+                false, HedgePolicy.defaults(),
+                100, 200, Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(30),
+                PROTOCOL_HTTP1, false, Duration.ofSeconds(2), Duration.ofSeconds(30));
+    }
+
+    /**
+     * 解析 policy.yaml 中的一项：字符串为地址，Map 为地址（url 或 urls）加设置；未写的字段取 base
+     */
+    public static RouteConfig from(String name, Object value, RouteConfig base) {
+        if (value instanceof String url) {
+            return base.with(name, List.of(url), Map.of());
+        }
+        if (value instanceof Map<?, ?> map) {
+            List<String> urls = map.get("urls") instanceof List<?> list
+                    ? list.stream().map(String::valueOf).toList()
+                    : map.containsKey("url") ? List.of(String.valueOf(map.get("url"))) : List.of();
+            return base.with(name, urls, map);
+        }
+        throw new IllegalArgumentException("Invalid route [" + name + "]: " + value);
+    }
+
+    private RouteConfig with(String name, List<String> urls, Map<?, ?> map) {
+        return new RouteConfig(name, urls,
+                String.valueOf(map.containsKey("balancer") ? map.get("balancer") : balancer),
+                intValue(map, "eject-after-failures", ejectAfterFailures),
+                duration(map, "eject-duration", ejectDuration),
+                map.containsKey("rate-limit") ? Double.parseDouble(String.valueOf(map.get("rate-limit"))) : rateLimit,
+                intValue(map, "burst", burst),
+                map.containsKey("idempotent") ? Boolean.parseBoolean(String.valueOf(map.get("idempotent"))) : idempotent,
+                HedgePolicy.from(map.get("hedge"), hedge),
+                intValue(map, "max-connections", maxConnections),
+                intValue(map, "pending-acquire-max", pendingAcquireMax),
+                duration(map, "pending-acquire-timeout", pendingAcquireTimeout),
+                duration(map, "max-idle-time", maxIdleTime),
+                duration(map, "max-life-time", maxLifeTime),
+                duration(map, "evict-interval", evictInterval),
+                String.valueOf(map.containsKey("protocol") ? map.get("protocol") : protocol),
+                map.containsKey("compression") ? Boolean.parseBoolean(String.valueOf(map.get("compression"))) : compression,
+                duration(map, "connect-timeout", connectTimeout),
+                duration(map, "response-timeout", responseTimeout));
+    }
+
+    private static int intValue(Map<?, ?> map, String key, int fallback) {
+        Object value = map.get(key);
+        return value != null ? Integer.parseInt(String.valueOf(value)) : fallback;
+    }
+
+    /**
+     * 时长写法与 application.yml 一致：30s、500ms、5m，纯数字按毫秒
+     */
+    private static Duration duration(Map<?, ?> map, String key, Duration fallback) {
+        Object value = map.get(key);
+        return value != null ? DurationStyle.detectAndParse(String.valueOf(value)) : fallback;
+    }
+}
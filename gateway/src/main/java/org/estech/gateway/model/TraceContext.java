@@ -0,0 +1,22 @@
+package org.estech.gateway.model;
+
+/**
+ * W3C Trace Context 的一跳：trace-id（32 位十六进制）、本跳的 span-id（16 位十六进制）与 sampled 标志。
+ * 转发给下游时放在 traceparent 头中，trace-id 同时作为日志中的 traceId。
+ */
+public record TraceContext(String traceId, String spanId, boolean sampled) {
+
+    public static final String TRACEPARENT = "traceparent";
+
+    /**
+     * traceparent 头：00-{trace-id}-{span-id}-{flags}
+     */
+    public String toTraceparent() {
+        return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    @Override
+    public String toString() {
+        return traceId;
+    }
+}
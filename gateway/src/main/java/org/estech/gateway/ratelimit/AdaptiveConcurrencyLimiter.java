@@ -0,0 +1,94 @@
+package org.estech.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按延迟自适应的并发上限（gradient 算法，思路同 Netflix concurrency-limits 的 Gradient2）：
+ * <ul>
+ *   <li>长期 RTT 取样本的慢速 EWMA，代表下游无排队时的延迟；</li>
+ *   <li>gradient = clamp(容忍系数 x 长期 RTT / 本次 RTT, 0.5, 1)，延迟上升时 &lt; 1，上限随之收缩；</li>
+ *   <li>新上限 = 上限 x gradient + sqrt(上限)，sqrt 项允许少量排队以探测更高的上限；</li>
+ *   <li>超时、429、5xx 视为丢弃，上限乘以 0.9。</li>
+ * </ul>
+ * 在途请求不足上限一半时不增长，避免流量低时上限虚高。样本更新用 tryLock，竞争时跳过该样本。
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    private static final double LONG_WINDOW = 600;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limit;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public int getLimit() { return (int) limit; }
+    public int getInFlight() { return inFlight.get(); }
+
+    /**
+     * 在途请求未达上限时占用一个名额
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求结束，归还名额并用本次 RTT 调整上限
+     *
+     * @param dropped 下游过载的信号（超时、429、5xx）
+     */
+    public void onSample(long rttNanos, boolean dropped) {
+        int inflight = inFlight.getAndDecrement();
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            double current = limit;
+            double target;
+            if (dropped) {
+                target = current * BACKOFF;
+            } else {
+                longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos + (rttNanos - longRttNanos) / LONG_WINDOW;
+                // 负载下降后长期 RTT 偏高，加速回落，否则 gradient 长时间停在 1
+                if (longRttNanos > 2.0 * rttNanos) {
+                    longRttNanos *= 0.95;
+                }
+                if (inflight < current / 2) {
+                    return;
+                }
+                double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / Math.max(1, rttNanos)));
+                target = current * gradient + Math.sqrt(current);
+            }
+            double next = current * (1 - SMOOTHING) + target * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, next));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 请求被取消（客户端断开等），只归还名额，不作为样本
+     */
+    public void onCancel() {
+        inFlight.decrementAndGet();
+    }
+}
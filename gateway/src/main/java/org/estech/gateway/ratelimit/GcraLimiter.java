@@ -0,0 +1,165 @@
+package org.estech.gateway.ratelimit;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按 key 限速的令牌桶，用 GCRA（Generic Cell Rate Algorithm）实现：每个 key 只保存一个“理论到达时间” TAT，
+ * 每次请求把 TAT 推后一个发放间隔，TAT 超前当前时间超过 burst 个间隔时拒绝。
+ * <p>
+ * 热点 key（如路由限速只有一个 key）可以分成 stripes 个子桶，各自按 rate/stripes 限速，burst 按子桶均分，
+ * 除不尽的部分分给前 burst % stripes 个子桶各加 1，子桶容量之和等于配置的 burst。
+ * 线程先用自己的子桶，被拒绝时再依次尝试其他子桶，总速率不变，多核之间不再争用同一个 CAS。
+ * 子桶之间隔开一个缓存行，避免伪共享。
+ * <p>
+ * key 数有上限：超过上限时清理已经回满（TAT 早于当前时间）的 key，清理最多每秒一次；
+ * 清理后仍然满时，新 key 共用一个溢出桶，而不是继续插入（客户端 key 来自未校验的 token，可以随意伪造）。
+ */
+public class GcraLimiter {
+
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+    /** AtomicLongArray 中相邻子桶的间隔（8 个 long = 64 字节） */
+    private static final int PAD = 8;
+
+    private final long intervalNanos;
+    /** 每个子桶的容量（以发放间隔计） */
+    private final long[] burstNanos;
+    private final double ratePerSecond;
+    private final int burst;
+    private final int stripes;
+    private final int maxKeys;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Bucket overflow;
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime() - SWEEP_INTERVAL_NANOS);
+
+    /**
+     * @param ratePerSecond 平均每秒允许的请求数，&lt;= 0 表示不限
+     * @param burst         允许的突发请求数（桶容量），至少为 1
+     * @param stripes       每个 key 的子桶数，不超过 burst
+     * @param maxKeys       最多保存的 key 数
+     */
+    public GcraLimiter(double ratePerSecond, int burst, int stripes, int maxKeys) {
+        int capacity = Math.max(1, burst);
+        this.stripes = Math.max(1, Math.min(stripes, capacity));
+        this.intervalNanos = ratePerSecond > 0 ? (long) (1_000_000_000L * this.stripes / ratePerSecond) : 0;
+        this.burstNanos = new long[this.stripes];
+        for (int i = 0; i < this.stripes; i++) {
+            burstNanos[i] = intervalNanos * (capacity / this.stripes + (i < capacity % this.stripes ? 1 : 0));
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.burst = capacity;
+        this.maxKeys = maxKeys;
+        this.overflow = new Bucket(this.stripes);
+    }
+
+    public boolean isUnlimited() {
+        return intervalNanos == 0;
+    }
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @return 0 表示通过；否则为拒绝，值为需要等待的纳秒数（用于 Retry-After）
+     */
+    public long tryAcquire(String key) {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        Bucket bucket = bucket(key);
+        long now = System.nanoTime();
+        int home = stripes == 1 ? 0 : (int) Math.floorMod(Thread.currentThread().threadId(), stripes);
+        long wait = Long.MAX_VALUE;
+        for (int i = 0; i < stripes; i++) {
+            long stripeWait = bucket.tryAcquire((home + i) % stripes, now);
+            if (stripeWait == 0) {
+                return 0;
+            }
+            wait = Math.min(wait, stripeWait);
+        }
+        return wait;
+    }
+
+    /**
+     * 生效的子桶设置，用于日志
+     */
+    @Override
+    public String toString() {
+        int base = burst / stripes;
+        int larger = burst % stripes;
+        return String.format(Locale.ROOT, "rate=%.2f/s burst=%d stripes=%d (per stripe: rate=%.2f/s burst=%s)",
+                ratePerSecond, burst, stripes, ratePerSecond / stripes,
+                larger == 0 ? String.valueOf(base) : larger + "x" + (base + 1) + " + " + (stripes - larger) + "x" + base);
+    }
+
+    private Bucket bucket(String key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            sweep();
+            if (buckets.size() >= maxKeys) {
+                return overflow;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new Bucket(stripes));
+    }
+
+    /**
+     * 移除已回满的 key：它们的状态等同于新 key，删掉不影响限速结果。距上次清理不足一秒时跳过
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (Iterator<Bucket> it = buckets.values().iterator(); it.hasNext(); ) {
+            if (it.next().isFull(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    private final class Bucket {
+
+        private final AtomicLongArray tats;
+
+        Bucket(int stripes) {
+            this.tats = new AtomicLongArray(stripes * PAD);
+            for (int i = 0; i < stripes; i++) {
+                tats.set(i * PAD, Long.MIN_VALUE);
+            }
+        }
+
+        long tryAcquire(int stripe, long now) {
+            int index = stripe * PAD;
+            while (true) {
+                long current = tats.get(index);
+                long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long next = base + intervalNanos;
+                long ahead = next - now;
+                if (ahead > burstNanos[stripe]) {
+                    return ahead - burstNanos[stripe];
+                }
+                if (tats.compareAndSet(index, current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            for (int i = 0; i < stripes; i++) {
+                long tat = tats.get(i * PAD);
+                if (tat != Long.MIN_VALUE && tat - now > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
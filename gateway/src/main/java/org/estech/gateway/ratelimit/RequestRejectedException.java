@@ -0,0 +1,40 @@
+package org.estech.gateway.ratelimit;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+/**
+ * 网关主动拒绝的请求（限速 429 / 过载 503），带上建议的 Retry-After；不计入熔断，也不重试
+ */
+public class RequestRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final Duration retryAfter;
+
+    public RequestRejectedException(HttpStatus status, String message, Duration retryAfter) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public static RequestRejectedException rateLimited(String what, long waitNanos) {
+        return new RequestRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                "Rate limit exceeded for " + what, Duration.ofNanos(waitNanos));
+    }
+
+    public static RequestRejectedException overloaded(String route) {
+        return new RequestRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Route " + route + " is at its concurrency limit", Duration.ofSeconds(1));
+    }
+
+    public HttpStatus getStatus() { return status; }
+    public Duration getRetryAfter() { return retryAfter; }
+
+    /**
+     * Retry-After 头的秒数（向上取整，至少 1 秒）
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+}
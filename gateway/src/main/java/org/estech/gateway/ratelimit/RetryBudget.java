@@ -0,0 +1,88 @@
+package org.estech.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 重试预算：最近 10 秒内的重试次数不超过 minPerSecond x 10 + ratio x 请求数。
+ * 下游故障时所有请求都失败，按请求数比例限制重试，避免每个请求都重试把流量放大数倍。
+ * 对冲请求也用它限制额外发出的请求比例（minPerSecond 为 0）。
+ * <p>
+ * 按秒分 10 个槽计数，槽过期时由第一个访问者清零；并发下计数允许少量误差。
+ */
+public class RetryBudget {
+
+    private static final int SLOTS = 10;
+
+    private final double ratio;
+    private final int minPerSecond;
+    private final AtomicLongArray epochs = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray requests = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray retries = new AtomicLongArray(SLOTS);
+
+    /**
+     * @param ratio        重试次数与请求数之比的上限，例如 0.2
+     * @param minPerSecond 流量很低时仍允许的每秒重试次数
+     */
+    public RetryBudget(double ratio, int minPerSecond) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        for (int i = 0; i < SLOTS; i++) {
+            epochs.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * 记录一个请求（不论是否会重试）
+     */
+    public void onRequest() {
+        requests.incrementAndGet(slot(currentSecond()));
+    }
+
+    /**
+     * 预算足够时记录一次重试并返回 true
+     */
+    public boolean tryRetry() {
+        long second = currentSecond();
+        int slot = slot(second);
+        if (retries() >= allowed(second)) {
+            return false;
+        }
+        retries.incrementAndGet(slot);
+        return true;
+    }
+
+    private double allowed(long second) {
+        long total = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (second - epochs.get(i) < SLOTS) {
+                total += requests.get(i);
+            }
+        }
+        return (double) minPerSecond * SLOTS + ratio * total;
+    }
+
+    private long retries() {
+        long second = currentSecond();
+        long total = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (second - epochs.get(i) < SLOTS) {
+                total += retries.get(i);
+            }
+        }
+        return total;
+    }
+
+    private int slot(long second) {
+        int slot = (int) Math.floorMod(second, SLOTS);
+        long epoch = epochs.get(slot);
+        if (epoch != second && epochs.compareAndSet(slot, epoch, second)) {
+            requests.set(slot, 0);
+            retries.set(slot, 0);
+        }
+        return slot;
+    }
+
+    private static long currentSecond() {
+        return Math.floorDiv(System.nanoTime(), 1_000_000_000L);
+    }
+}
@@ -1,69 +1,136 @@
 package org.estech.gateway.service;
 
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
-import io.github.resilience4j.retry.Retry;
-import io.github.resilience4j.retry.RetryConfig;
-import io.github.resilience4j.core.IntervalFunction;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.ratelimit.RetryBudget;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import reactor.util.retry.RetryBackoffSpec;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * 按路由隔离的熔断、舱壁与重试：
+ * <ul>
+ *   <li>熔断器与舱壁来自 resilience4j 的 registry，名称为路由名；默认配置（configs.default）与单个路由的覆盖
+ *       （instances.{路由}）都写在 application.yml 的 resilience4j.circuitbreaker / resilience4j.bulkhead 下，
+ *       失败判定见 {@link DownstreamFailurePredicate}，指标由 resilience4j-micrometer 导出；</li>
+ *   <li>只有连接错误、超时、502/503/504 会重试，间隔为带抖动的指数退避；</li>
+ *   <li>重试同时受路由与全局的重试预算限制（见 {@link RetryBudget}），下游故障时不会形成重试风暴。</li>
+ * </ul>
+ */
 @Slf4j
 @Service
 public class CircuitService {
 
-    private final CircuitBreaker circuitBreaker;
-    private final Retry retry;
-    private final RetryConfig retryConfig;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final MeterRegistry meterRegistry;
+
+    private final int maxRetries;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final double budgetRatio;
+    private final int budgetMinPerSecond;
+    private final RetryBudget globalBudget;
+
+    private final Map<String, RouteResilience> routes = new ConcurrentHashMap<>();
 
     public CircuitService(
-            @Value("${gateway.retry-attempts:3}") int retries,
-            @Value("${gateway.circuit-failure-threshold:3}") int failureThreshold
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            BulkheadRegistry bulkheadRegistry,
+            MeterRegistry meterRegistry,
+            @Value("${gateway.retry-attempts:2}") int retries,
+            @Value("${gateway.retry.min-backoff:100ms}") Duration minBackoff,
+            @Value("${gateway.retry.max-backoff:2s}") Duration maxBackoff,
+            @Value("${gateway.retry.budget-ratio:0.2}") double budgetRatio,
+            @Value("${gateway.retry.budget-min-per-second:5}") int budgetMinPerSecond
     ) {
-        // 熔断器配置
-        this.circuitBreaker = CircuitBreaker.of("gateway",
-                CircuitBreakerConfig.custom()
-                        .failureRateThreshold(50f)
-                        .minimumNumberOfCalls(failureThreshold)
-                        .waitDurationInOpenState(Duration.ofSeconds(10))
-                        .enableAutomaticTransitionFromOpenToHalfOpen()
-                        .build());
-
-        IntervalFunction intervalFn = IntervalFunction.of(Duration.ofSeconds(1));
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.meterRegistry = meterRegistry;
+        this.maxRetries = retries;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.budgetRatio = budgetRatio;
+        this.budgetMinPerSecond = budgetMinPerSecond;
+        this.globalBudget = new RetryBudget(budgetRatio, budgetMinPerSecond);
+    }
 
-        this.retryConfig = RetryConfig.custom()
-                .maxAttempts(retries)
-                .intervalFunction(intervalFn)
-                .retryExceptions(Exception.class)
-                .build();
+    /**
+     * 包装一次对路由的调用：舱壁 -> 熔断 -> 重试（由内到外）
+     *
+     * @param retryable 为 false 时只熔断不重试（例如透传的请求体只能订阅一次）
+     */
+    public <T> Mono<T> decorate(String route, Mono<T> source, boolean retryable) {
+        RouteResilience resilience = routes.computeIfAbsent(route, this::create);
+        Mono<T> guarded = source
+                .transformDeferred(BulkheadOperator.of(resilience.bulkhead()))
+                .transformDeferred(CircuitBreakerOperator.of(resilience.circuitBreaker()));
 
-        this.retry = Retry.of("gateway", retryConfig);
+        return Mono.defer(() -> {
+            resilience.budget().onRequest();
+            globalBudget.onRequest();
+            if (!retryable || maxRetries <= 0) {
+                return guarded;
+            }
+            RetryBackoffSpec retry = Retry.backoff(maxRetries, minBackoff)
+                    .maxBackoff(maxBackoff)
+                    .jitter(0.5)
+                    .filter(e -> isRetryable(e) && withinBudget(route, resilience))
+                    .doBeforeRetry(signal -> log.warn("Retrying route [{}] (attempt {}): {}",
+                            route, signal.totalRetries() + 1, signal.failure().toString()))
+                    .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+            return guarded.retryWhen(retry);
+        });
     }
 
     /**
-     * 包装 Mono 任务：支持 Resilience4j 熔断 + Reactor 重试
+     * 连接错误、超时与 502/503/504 可以重试；4xx、熔断打开、舱壁已满、网关限流拒绝都不重试
      */
-    public <T> Mono<T> decorate(Mono<T> source) {
-        int maxAttempts = retryConfig.getMaxAttempts();
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == 502 || status == 503 || status == 504;
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
 
-        long delayMillis = retryConfig.getIntervalFunction().apply(1);
-        Duration delay = Duration.ofMillis(delayMillis);
+    private boolean withinBudget(String route, RouteResilience resilience) {
+        if (resilience.budget().tryRetry() && globalBudget.tryRetry()) {
+            return true;
+        }
+        meterRegistry.counter("gateway.retry.budget.exhausted", "route", route).increment();
+        return false;
+    }
 
-        RetryBackoffSpec reactorRetry = reactor.util.retry.Retry
-                .fixedDelay(maxAttempts, delay)
-                .filter(throwable -> !throwable.getMessage().contains("boundary") && !throwable.getMessage().contains("400") &&
-                        !throwable.getMessage().contains("4xx"))
-                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    private RouteResilience create(String route) {
+        // resilience4j.circuitbreaker.instances.{路由} 有配置时使用它，否则使用 configs.default
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(route);
+        CircuitBreakerConfig config = circuitBreaker.getCircuitBreakerConfig();
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("🛡️ Circuit breaker [{}] {}", route, event.getStateTransition()));
 
-        return source
-                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
-                .retryWhen(reactorRetry)
-                .doOnError(e -> log.warn("⚠️ Retry failed after {} attempts: {}", maxAttempts, e.getMessage()));
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(route);
+        log.info("Route [{}] circuit breaker: failure-rate {}%, min calls {}; bulkhead: max concurrent {}",
+                route, config.getFailureRateThreshold(), config.getMinimumNumberOfCalls(),
+                bulkhead.getBulkheadConfig().getMaxConcurrentCalls());
+        return new RouteResilience(circuitBreaker, bulkhead, new RetryBudget(budgetRatio, budgetMinPerSecond));
     }
+
+    private record RouteResilience(CircuitBreaker circuitBreaker, Bulkhead bulkhead, RetryBudget budget) {}
 }
@@ -0,0 +1,23 @@
+package org.estech.gateway.service;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * 熔断器的失败判定（resilience4j.circuitbreaker.configs.default.record-failure-predicate）：
+ * 只有连接错误、超时、5xx 说明下游有问题，其余结果按成功计。
+ * 舱壁已满与网关限流拒绝在 ignore-exceptions 中排除，不参与失败率计算
+ */
+public class DownstreamFailurePredicate implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+}
@@ -0,0 +1,128 @@
+package org.estech.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.balancer.LatencyTracker;
+import org.estech.gateway.balancer.Upstream;
+import org.estech.gateway.balancer.UpstreamGroup;
+import org.estech.gateway.model.HedgePolicy;
+import org.estech.gateway.model.RouteConfig;
+import org.estech.gateway.ratelimit.RetryBudget;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 对冲请求：幂等路由的请求超过该路由最近延迟的分位数（如 p95）仍未返回时，向另一个实例再发一次，
+ * 先返回的结果生效，另一个请求被取消（连接随之关闭，实例的在途数同步减少）。
+ * <p>
+ * 对冲请求数受预算限制（见 {@link HedgePolicy#budget()}），指标：
+ * gateway.hedge.sent / gateway.hedge.won / gateway.hedge.budget.exhausted / gateway.hedge.delay。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HedgeService {
+
+    /** 延迟样本少于该数时使用 min-delay */
+    private static final int MIN_SAMPLES = 100;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Meter> delayGauges = new ConcurrentHashMap<>();
+
+    /**
+     * 路由启用对冲时带对冲地执行，否则等同于 {@link UpstreamGroup#execute(Function)}
+     */
+    public <T> Mono<T> execute(RouteRuntime runtime, Function<Upstream, Mono<T>> request) {
+        UpstreamGroup upstreams = runtime.upstreams();
+        RouteHedge hedge = runtime.hedge();
+        if (hedge == null) {
+            return upstreams.execute(request);
+        }
+        String route = runtime.name();
+
+        return Mono.defer(() -> {
+            hedge.budget().onRequest();
+            Duration delay = hedge.delay();
+            Upstream primary = upstreams.choose();
+
+            Mono<T> first = timed(hedge, upstreams.call(primary, request));
+            Mono<T> second = Mono.delay(delay).then(Mono.defer(() -> {
+                Upstream other = upstreams.chooseOther(primary);
+                if (other == null) {
+                    return Mono.<T>never();
+                }
+                if (!hedge.budget().tryRetry()) {
+                    hedge.exhausted().increment();
+                    return Mono.<T>never();
+                }
+                hedge.sent().increment();
+                log.debug("Hedging route [{}] to {} after {} ms", route, other, delay.toMillis());
+                return timed(hedge, upstreams.call(other, request))
+                        .doOnSuccess(v -> hedge.won().increment())
+                        // 对冲失败不影响主请求，由主请求决定结果
+                        .onErrorResume(e -> Mono.never());
+            }));
+            // 主请求的任何结果（包括错误）都直接生效，对冲请求只在主请求之前成功时生效
+            return Mono.firstWithSignal(first, second);
+        });
+    }
+
+    /**
+     * 路由的对冲状态（延迟分位数与预算），未启用对冲时返回 null；由 {@link RouteTableService} 随路由表持有
+     */
+    public RouteHedge create(RouteConfig config) {
+        removeMeters(config.getName());
+        return config.isHedgingEnabled() ? create(config.getName(), config.getHedge()) : null;
+    }
+
+    /**
+     * 移除路由的对冲指标
+     */
+    public void removeMeters(String route) {
+        Meter gauge = delayGauges.remove(route);
+        if (gauge != null) {
+            meterRegistry.remove(gauge);
+        }
+    }
+
+    private static <T> Mono<T> timed(RouteHedge hedge, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doOnSuccess(v -> hedge.latency().record(System.nanoTime() - start));
+        });
+    }
+
+    private RouteHedge create(String route, HedgePolicy policy) {
+        RouteHedge hedge = new RouteHedge(policy, new LatencyTracker(),
+                new RetryBudget(policy.budget(), 0),
+                meterRegistry.counter("gateway.hedge.sent", "route", route),
+                meterRegistry.counter("gateway.hedge.won", "route", route),
+                meterRegistry.counter("gateway.hedge.budget.exhausted", "route", route));
+        delayGauges.put(route, Gauge.builder("gateway.hedge.delay", hedge, h -> h.delay().toNanos() / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .tag("route", route)
+                .register(meterRegistry));
+        log.info("Route [{}] hedging enabled: p{} delay (min {}), budget {}",
+                route, policy.percentile() * 100, policy.minDelay(), policy.budget());
+        return hedge;
+    }
+
+    public record RouteHedge(HedgePolicy policy, LatencyTracker latency, RetryBudget budget,
+                             Counter sent, Counter won, Counter exhausted) {
+
+        Duration delay() {
+            Duration observed = latency.percentile(policy.percentile(), MIN_SAMPLES);
+            return observed == null || observed.compareTo(policy.minDelay()) < 0 ? policy.minDelay() : observed;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.estech.gateway.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.balancer.Upstream;
+import org.estech.gateway.balancer.UpstreamGroup;
+import org.estech.gateway.model.RouteConfig;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 创建路由的下游实例组（见 {@link UpstreamGroup}），并导出每个实例的在途数、延迟 EWMA 与摘除状态。
+ * 策略热加载时只有实例列表或均衡设置有变化的路由会新建实例组，其余路由沿用原实例组与统计（见 {@link RouteTableService}）。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LoadBalancerService {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+
+    /**
+     * 为路由创建实例组并注册实例指标，替换该路由已有的指标；实例组由 {@link RouteTableService} 持有
+     */
+    public UpstreamGroup create(RouteConfig config) {
+        UpstreamGroup group = new UpstreamGroup(config);
+        // 同名指标已注册时 register 会返回旧指标（仍指向旧实例），先移除
+        removeMeters(config.getName());
+        List<Meter> registered = new ArrayList<>();
+        for (Upstream upstream : group.getUpstreams()) {
+            registered.add(Gauge.builder("gateway.upstream.inflight", upstream, Upstream::getInFlight)
+                    .tag("route", upstream.getRoute())
+                    .tag("instance", upstream.getUrl())
+                    .register(meterRegistry));
+            registered.add(Gauge.builder("gateway.upstream.latency.ewma", upstream, Upstream::getEwmaMillis)
+                    .baseUnit("milliseconds")
+                    .tag("route", upstream.getRoute())
+                    .tag("instance", upstream.getUrl())
+                    .register(meterRegistry));
+            registered.add(Gauge.builder("gateway.upstream.ejected", upstream, u -> u.isEjected(System.nanoTime()) ? 1 : 0)
+                    .tag("route", upstream.getRoute())
+                    .tag("instance", upstream.getUrl())
+                    .register(meterRegistry));
+        }
+        meters.put(config.getName(), registered);
+        log.info("Route [{}] balancer={}, upstreams={}", config.getName(), config.getBalancer(), config.getUrls());
+        return group;
+    }
+
+    /**
+     * 路由已删除时移除其实例指标
+     */
+    public void removeMeters(String route) {
+        List<Meter> registered = meters.remove(route);
+        if (registered != null) {
+            registered.forEach(meterRegistry::remove);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.estech.gateway.service;
+
+import org.estech.gateway.model.RouteConfig;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * policy.yaml 重新加载并生效后发布，各服务据此为新增或变化的路由重建组件、清理已删除的路由
+ *
+ * @param previous 重新加载前的路由表
+ * @param current  当前生效的路由表
+ */
+public record PolicyReloadedEvent(Map<String, RouteConfig> previous, Map<String, RouteConfig> current) {
+
+    /**
+     * 新路由表中已不存在的路由
+     */
+    public List<String> removed() {
+        return previous.keySet().stream().filter(name -> !current.containsKey(name)).toList();
+    }
+}
@@ -1,39 +1,205 @@
 package org.estech.gateway.service;
 
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.model.HedgePolicy;
+import org.estech.gateway.model.RouteConfig;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.yaml.snakeyaml.Yaml;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * 路由策略。配置了 gateway.policy.file 时从该文件加载并监听其所在目录，文件变化后重新解析、校验，
+ * 通过后整体替换路由表并发布 {@link PolicyReloadedEvent}；校验失败则保留当前路由表。
+ * <p>
+ * 路由表是不可变 Map，放在 AtomicReference 中整体替换，请求线程读取时不加锁。
+ * 未配置外部文件时使用 classpath 中的 policy.yaml，不监听变化。
+ */
 @Slf4j
 @Service
-@Getter
 public class PolicyService {
 
-    @Value("classpath:policy.yaml")
-    private Resource policyResource;
+    /** 编辑器保存、ConfigMap 更新会连续触发多个事件，等待这么久没有新事件后再加载 */
+    private static final long DEBOUNCE_MILLIS = 200;
 
-    private Map<String, String> routes;
+    private final Resource policyResource;
+    private final String policyFile;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicReference<Map<String, RouteConfig>> routeConfigs = new AtomicReference<>(Map.of());
+    private volatile String loadedContent;
+    private WatchService watchService;
+
+    public PolicyService(
+            @Value("classpath:policy.yaml") Resource policyResource,
+            @Value("${gateway.policy.file:}") String policyFile,
+            ApplicationEventPublisher eventPublisher
+    ) {
+        this.policyResource = policyResource;
+        this.policyFile = policyFile;
+        this.eventPublisher = eventPublisher;
+    }
 
     @PostConstruct
     public void loadPolicy() {
-        try (InputStream input = policyResource.getInputStream()) {
-            Yaml yaml = new Yaml();
-            Map<String, Object> data = yaml.load(input);
-            this.routes = (Map<String, String>) data.get("routes");
-            log.info("Loaded routes: {}", routes);
+        if (policyFile.isBlank()) {
+            try (InputStream input = policyResource.getInputStream()) {
+                apply(new String(input.readAllBytes(), StandardCharsets.UTF_8), "classpath:policy.yaml");
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load policy.yaml", e);
+            }
+            return;
+        }
+        Path path = Path.of(policyFile).toAbsolutePath();
+        try {
+            apply(Files.readString(path), path.toString());
+            watch(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load policy file " + path, e);
+        }
+    }
+
+    /**
+     * 路由配置，未知路由返回 null
+     */
+    public RouteConfig getRouteConfig(String service) {
+        return routeConfigs.get().get(service);
+    }
+
+    /**
+     * 当前路由表（不可变）
+     */
+    public Map<String, RouteConfig> getRouteConfigs() {
+        return routeConfigs.get();
+    }
+
+    /**
+     * 重新读取外部策略文件；内容未变化或校验失败时不替换路由表
+     */
+    public void reload() {
+        Path path = Path.of(policyFile).toAbsolutePath();
+        try {
+            String content = Files.readString(path);
+            if (content.equals(loadedContent)) {
+                return;
+            }
+            Map<String, RouteConfig> previous = routeConfigs.get();
+            apply(content, path.toString());
+            eventPublisher.publishEvent(new PolicyReloadedEvent(previous, routeConfigs.get()));
         } catch (Exception e) {
-            log.error("Failed to load policy.yaml", e);
+            log.error("Rejected policy reload from {}, keeping current routes {}: {}",
+                    path, routeConfigs.get().keySet(), e.getMessage());
+        }
+    }
+
+    private void apply(String content, String source) {
+        Map<String, RouteConfig> configs = parse(content);
+        routeConfigs.set(configs);
+        loadedContent = content;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        configs.forEach((name, config) -> summary.put(name, config.getUrls()));
+        log.info("Loaded routes from {}: {}", source, summary);
+    }
+
+    /**
+     * 解析并校验整份策略，任何一个路由不合法都抛出 IllegalArgumentException
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, RouteConfig> parse(String content) {
+        Map<String, Object> data = new Yaml().load(content);
+        if (data == null || !(data.get("routes") instanceof Map<?, ?> routes) || routes.isEmpty()) {
+            throw new IllegalArgumentException("Policy has no routes");
+        }
+        RouteConfig defaults = data.containsKey("defaults")
+                ? RouteConfig.from("defaults", data.get("defaults"), RouteConfig.defaults())
+                : RouteConfig.defaults();
+
+        Map<String, RouteConfig> configs = new LinkedHashMap<>();
+        ((Map<String, Object>) routes).forEach((name, value) -> {
+            RouteConfig config = RouteConfig.from(name, value, defaults);
+            validate(config);
+            configs.put(name, config);
+        });
+        return Collections.unmodifiableMap(configs);
+    }
+
+    private static void validate(RouteConfig config) {
+        if (config.getUrls().isEmpty()) {
+            throw new IllegalArgumentException("Route [" + config.getName() + "] has no upstream url");
+        }
+        for (String url : config.getUrls()) {
+            URI uri = URI.create(url);
+            if ((!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) || uri.getHost() == null) {
+                throw new IllegalArgumentException("Route [" + config.getName() + "] has invalid url: " + url);
+            }
+        }
+        HedgePolicy hedge = config.getHedge();
+        if (!(hedge.percentile() > 0 && hedge.percentile() <= 1)) {
+            throw new IllegalArgumentException("Route [" + config.getName() + "] hedge.percentile must be in (0, 1]: "
+                    + hedge.percentile());
+        }
+        if (!(hedge.budget() >= 0)) {
+            throw new IllegalArgumentException("Route [" + config.getName() + "] hedge.budget must not be negative: "
+                    + hedge.budget());
+        }
+        if (hedge.minDelay().isNegative()) {
+            throw new IllegalArgumentException("Route [" + config.getName() + "] hedge.min-delay must not be negative: "
+                    + hedge.minDelay());
         }
     }
 
-    public String getRoute(String service) {
-        return routes.get(service);
+    /**
+     * 监听文件所在目录而不是文件本身：编辑器与 Kubernetes ConfigMap 通常以新建文件再替换的方式更新
+     */
+    private void watch(Path path) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    // 合并短时间内的连续事件
+                    do {
+                        key.pollEvents();
+                        key.reset();
+                    } while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                    reload();
+                }
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                log.info("Stopped watching {}", path);
+            }
+        }, "policy-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching {} for changes", path);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
     }
 }
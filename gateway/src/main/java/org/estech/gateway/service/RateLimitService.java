@@ -0,0 +1,147 @@
+package org.estech.gateway.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.model.RouteConfig;
+import org.estech.gateway.ratelimit.AdaptiveConcurrencyLimiter;
+import org.estech.gateway.ratelimit.GcraLimiter;
+import org.estech.gateway.ratelimit.RequestRejectedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 网关限流：
+ * <ul>
+ *   <li>按客户端（token subject）与按路由的令牌桶限速，超出返回 429 + Retry-After；</li>
+ *   <li>按路由的自适应并发上限（{@link AdaptiveConcurrencyLimiter}），根据下游延迟伸缩，超出返回 503。</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class RateLimitService {
+
+    private final MeterRegistry meterRegistry;
+    private final GcraLimiter clientLimiter;
+    private final int routeStripes;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+
+    public RateLimitService(
+            MeterRegistry meterRegistry,
+            @Value("${gateway.rate-limit.client-rate:0}") double clientRate,
+            @Value("${gateway.rate-limit.client-burst:1}") int clientBurst,
+            @Value("${gateway.rate-limit.client-max-keys:100000}") int clientMaxKeys,
+            @Value("${gateway.rate-limit.route-stripes:0}") int routeStripes,
+            @Value("${gateway.concurrency.initial-limit:20}") int initialLimit,
+            @Value("${gateway.concurrency.min-limit:4}") int minLimit,
+            @Value("${gateway.concurrency.max-limit:200}") int maxLimit
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.clientLimiter = new GcraLimiter(clientRate, clientBurst, 1, clientMaxKeys);
+        this.routeStripes = routeStripes > 0 ? routeStripes : Runtime.getRuntime().availableProcessors();
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * 客户端限速
+     *
+     * @throws RequestRejectedException 超出该客户端的速率
+     */
+    public void checkClient(String subject) {
+        long wait = clientLimiter.tryAcquire(subject);
+        if (wait > 0) {
+            meterRegistry.counter("gateway.rejected", "reason", "client-rate").increment();
+            throw RequestRejectedException.rateLimited("client " + subject, wait);
+        }
+    }
+
+    /**
+     * 路由限速 + 并发上限：每次订阅（包括重试）先检查，再执行 call，并用 call 的耗时调整该路由的并发上限
+     */
+    public <T> Mono<T> guardRoute(RouteRuntime runtime, Mono<T> call) {
+        String route = runtime.name();
+        GcraLimiter rateLimiter = runtime.rateLimiter();
+        AdaptiveConcurrencyLimiter limiter = runtime.concurrencyLimiter();
+        return Mono.defer(() -> {
+            long wait = rateLimiter != null ? rateLimiter.tryAcquire(route) : 0;
+            if (wait > 0) {
+                meterRegistry.counter("gateway.rejected", "reason", "route-rate", "route", route).increment();
+                return Mono.error(RequestRejectedException.rateLimited("route " + route, wait));
+            }
+            if (!limiter.tryAcquire()) {
+                meterRegistry.counter("gateway.rejected", "reason", "concurrency", "route", route).increment();
+                return Mono.error(RequestRejectedException.overloaded(route));
+            }
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(v -> limiter.onSample(System.nanoTime() - start, false))
+                    .doOnError(e -> limiter.onSample(System.nanoTime() - start, isOverload(e)))
+                    .doOnCancel(limiter::onCancel);
+        });
+    }
+
+    /**
+     * 路由限速的令牌桶，未配置 rate-limit 时返回 null
+     */
+    public GcraLimiter createRateLimiter(RouteConfig config) {
+        if (config.getRateLimit() <= 0) {
+            log.info("Route [{}] rate-limit disabled", config.getName());
+            return null;
+        }
+        // 每个路由只有一个 key，分成多个子桶，避免所有核争用同一个 CAS
+        GcraLimiter limiter = new GcraLimiter(config.getRateLimit(), config.getBurst(), routeStripes, 1);
+        log.info("Route [{}] rate-limit {}", config.getName(), limiter);
+        return limiter;
+    }
+
+    /**
+     * 路由的自适应并发上限，并注册其指标
+     */
+    public AdaptiveConcurrencyLimiter createConcurrencyLimiter(String route) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+        removeMeters(route);
+        meters.put(route, List.of(
+                Gauge.builder("gateway.route.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                        .tag("route", route)
+                        .register(meterRegistry),
+                Gauge.builder("gateway.route.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                        .tag("route", route)
+                        .register(meterRegistry)));
+        log.info("Route [{}] concurrency limit {} in [{}, {}]", route, initialLimit, minLimit, maxLimit);
+        return limiter;
+    }
+
+    /**
+     * 路由已删除时移除其并发上限指标
+     */
+    public void removeMeters(String route) {
+        List<Meter> registered = meters.remove(route);
+        if (registered != null) {
+            registered.forEach(meterRegistry::remove);
+        }
+    }
+
+    /**
+     * 下游过载的信号：超时、429、5xx
+     */
+    private static boolean isOverload(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return e instanceof TimeoutException;
+    }
+}
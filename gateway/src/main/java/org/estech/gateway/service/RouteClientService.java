@@ -0,0 +1,77 @@
+package org.estech.gateway.service;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.model.RouteConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * 为每个路由创建 WebClient，各自使用独立的 Reactor Netty 连接池（按 {@link RouteConfig} 配置）。
+ * <p>
+ * 连接池开启了 metrics，指标 reactor.netty.connection.provider.* 以 name=gateway-{路由名} 区分，
+ * 可以看到每个路由的活跃/空闲/等待连接数。
+ * <p>
+ * 策略热加载时只有连接池或客户端设置变化的路由会换新的连接池（见 {@link RouteTableService}），
+ * 旧池在新路由表生效 drain-timeout 之后关闭：已取到旧客户端的请求（包括退避中的重试）仍可用完；
+ * 其余路由保留已预热的连接。
+ */
+@Slf4j
+@Service
+public class RouteClientService {
+
+    private final Duration drainTimeout;
+
+    public RouteClientService(@Value("${gateway.policy.drain-timeout:60s}") Duration drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * 路由的 WebClient 及其连接池
+     */
+    public record RouteClient(WebClient webClient, ConnectionProvider provider) {
+    }
+
+    public RouteClient create(RouteConfig config) {
+        ConnectionProvider provider = ConnectionProvider.builder("gateway-" + config.getName())
+                .maxConnections(config.getMaxConnections())
+                .pendingAcquireMaxCount(config.getPendingAcquireMax())
+                .pendingAcquireTimeout(config.getPendingAcquireTimeout())
+                .maxIdleTime(config.getMaxIdleTime())
+                .maxLifeTime(config.getMaxLifeTime())
+                .evictInBackground(config.getEvictInterval())
+                .disposeTimeout(config.getResponseTimeout())
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(provider)
+                .protocol(RouteConfig.PROTOCOL_H2C.equals(config.getProtocol()) ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                .keepAlive(true)
+                .compress(config.isCompression())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) config.getConnectTimeout().toMillis())
+                .responseTimeout(config.getResponseTimeout());
+
+        log.info("Route [{}] client: {} max-connections={}, pending={}, protocol={}", config.getName(),
+                config.getUrls(), config.getMaxConnections(), config.getPendingAcquireMax(), config.getProtocol());
+        return new RouteClient(WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build(), provider);
+    }
+
+    /**
+     * 关闭已从路由表换下的连接池：先等待 drain-timeout，再等在途请求完成（最多 response-timeout）
+     */
+    public void retire(ConnectionProvider provider) {
+        Mono.delay(drainTimeout)
+                .then(Mono.defer(provider::disposeLater))
+                .subscribe(null, e -> log.warn("Failed to dispose connection pool: {}", e.getMessage()));
+    }
+}
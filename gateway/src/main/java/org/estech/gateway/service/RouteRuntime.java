@@ -0,0 +1,29 @@
+package org.estech.gateway.service;
+
+import org.estech.gateway.balancer.UpstreamGroup;
+import org.estech.gateway.model.RouteConfig;
+import org.estech.gateway.ratelimit.AdaptiveConcurrencyLimiter;
+import org.estech.gateway.ratelimit.GcraLimiter;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * 一个路由在某一版路由表中的全部运行时组件，随路由表整体替换（见 {@link RouteTableService}）。
+ * 请求开始时取一次，之后的限流、选实例、发送都使用同一份，不会与热加载交错。
+ *
+ * @param config             路由配置
+ * @param upstreams          下游实例组
+ * @param client             使用 provider 连接池的 WebClient
+ * @param provider           路由独占的连接池
+ * @param rateLimiter        路由限速，未配置 rate-limit 时为 null
+ * @param concurrencyLimiter 自适应并发上限
+ * @param hedge              对冲状态，未启用对冲时为 null
+ */
+public record RouteRuntime(RouteConfig config, UpstreamGroup upstreams, WebClient client, ConnectionProvider provider,
+                           GcraLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           HedgeService.RouteHedge hedge) {
+
+    public String name() {
+        return config.getName();
+    }
+}
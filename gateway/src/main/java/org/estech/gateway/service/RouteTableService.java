@@ -0,0 +1,104 @@
+package org.estech.gateway.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.gateway.balancer.UpstreamGroup;
+import org.estech.gateway.model.RouteConfig;
+import org.estech.gateway.ratelimit.AdaptiveConcurrencyLimiter;
+import org.estech.gateway.ratelimit.GcraLimiter;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 路由运行时表：每个路由一个不可变的 {@link RouteRuntime}，整张表放在 AtomicReference 中整体替换，
+ * 请求线程读取时不加锁，也不会看到一半新一半旧的路由。
+ * <p>
+ * 策略热加载时先构建完整的新表：配置未变的组件沿用旧表中的实例（连接池保持预热，实例统计、并发上限与对冲延迟不丢失），
+ * 切换之后再释放被换下的连接池与指标。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RouteTableService {
+
+    private final PolicyService policyService;
+    private final LoadBalancerService loadBalancerService;
+    private final RouteClientService routeClientService;
+    private final RateLimitService rateLimitService;
+    private final HedgeService hedgeService;
+
+    private final AtomicReference<Map<String, RouteRuntime>> table = new AtomicReference<>(Map.of());
+
+    @PostConstruct
+    public void init() {
+        table.set(build(policyService.getRouteConfigs(), Map.of()));
+    }
+
+    /**
+     * 路由的运行时组件，未知路由返回 null
+     */
+    public RouteRuntime get(String route) {
+        return table.get().get(route);
+    }
+
+    @EventListener
+    public synchronized void onPolicyReloaded(PolicyReloadedEvent event) {
+        Map<String, RouteRuntime> previous = table.get();
+        Map<String, RouteRuntime> current = build(event.current(), previous);
+        table.set(current);
+
+        // 切换之后再释放：已经取到旧组件的请求仍可用完，旧连接池在 drain-timeout 之后关闭
+        previous.forEach((route, old) -> {
+            RouteRuntime next = current.get(route);
+            if (next == null) {
+                loadBalancerService.removeMeters(route);
+                rateLimitService.removeMeters(route);
+                hedgeService.removeMeters(route);
+                routeClientService.retire(old.provider());
+                log.info("Route [{}] removed", route);
+            } else if (next.provider() != old.provider()) {
+                routeClientService.retire(old.provider());
+            }
+        });
+    }
+
+    private Map<String, RouteRuntime> build(Map<String, RouteConfig> configs, Map<String, RouteRuntime> previous) {
+        Map<String, RouteRuntime> routes = new LinkedHashMap<>();
+        configs.values().forEach(config -> routes.put(config.getName(), build(config, previous.get(config.getName()))));
+        return Collections.unmodifiableMap(routes);
+    }
+
+    private RouteRuntime build(RouteConfig config, RouteRuntime old) {
+        RouteConfig before = old != null ? old.config() : null;
+
+        UpstreamGroup upstreams = before != null && before.sameUpstreams(config)
+                ? old.upstreams() : loadBalancerService.create(config);
+        RouteClientService.RouteClient client = before != null && before.sameClient(config)
+                ? new RouteClientService.RouteClient(old.client(), old.provider()) : routeClientService.create(config);
+        GcraLimiter rateLimiter = before != null && before.getRateLimit() == config.getRateLimit()
+                && before.getBurst() == config.getBurst()
+                ? old.rateLimiter() : rateLimitService.createRateLimiter(config);
+        // 并发上限由下游延迟决定，与配置无关，已有路由一直沿用
+        AdaptiveConcurrencyLimiter concurrencyLimiter = old != null
+                ? old.concurrencyLimiter() : rateLimitService.createConcurrencyLimiter(config.getName());
+        HedgeService.RouteHedge hedge = before != null && before.isHedgingEnabled() == config.isHedgingEnabled()
+                && before.getHedge().equals(config.getHedge())
+                ? old.hedge() : hedgeService.create(config);
+
+        return new RouteRuntime(config, upstreams, client.webClient(), client.provider(), rateLimiter,
+                concurrencyLimiter, hedge);
+    }
+
+    @PreDestroy
+    public void close() {
+        Map<String, RouteRuntime> routes = table.getAndSet(Map.of());
+        routes.values().forEach(runtime -> runtime.provider().dispose());
+    }
+}
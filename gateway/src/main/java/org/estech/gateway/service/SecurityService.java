@@ -1,12 +1,18 @@
 package org.estech.gateway.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Base64;
+
 @Service
 @RequiredArgsConstructor
 public class SecurityService {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     @Value("${gateway.jwt-secret}")
     private String secret;
 
@@ -19,4 +25,23 @@ public class SecurityService {
             return false;
         }
     }
+
+    /**
+     * 限流使用的客户端标识：JWT 的 sub，不是 JWT 或没有 sub 时使用 token 本身。
+     * 只解码 payload，不校验签名（签名由 validateToken 负责）。
+     */
+    public String subject(String token) {
+        String[] segments = token.split("\\.");
+        if (segments.length == 3) {
+            try {
+                JsonNode payload = MAPPER.readTree(Base64.getUrlDecoder().decode(segments[1]));
+                if (payload.hasNonNull("sub")) {
+                    return payload.get("sub").asText();
+                }
+            } catch (Exception e) {
+                // 非法 payload，按普通 token 处理
+            }
+        }
+        return token;
+    }
 }
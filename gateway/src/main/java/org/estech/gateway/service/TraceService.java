@@ -1,11 +1,105 @@
 package org.estech.gateway.service;
 
+import org.estech.gateway.model.TraceContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.UUID;
 
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 链路 ID：兼容 W3C traceparent，请求带合法 traceparent 时沿用其 trace-id，否则生成新的。
+ * <p>
+ * ID 由 ThreadLocalRandom 生成（不需要密码学强度），不像 UUID.randomUUID() 那样经过 SecureRandom，
+ * 不会在熵不足时阻塞事件循环线程。
+ */
 @Service
 public class TraceService {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** 请求日志的采样率：未被上游标记 sampled 的请求按该比例输出 INFO 请求日志 */
+    private final double logSampleRate;
+
+    public TraceService(@Value("${gateway.logging.sample-rate:1.0}") double logSampleRate) {
+        this.logSampleRate = logSampleRate;
+    }
+
     public String generateTraceId() {
-        return UUID.randomUUID().toString();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = random.nextLong();
+        long low = random.nextLong();
+        if (high == 0 && low == 0) {
+            low = 1; // 全 0 的 trace-id 在规范中无效
+        }
+        char[] chars = new char[32];
+        writeHex(chars, 0, high);
+        writeHex(chars, 16, low);
+        return new String(chars);
+    }
+
+    public String generateSpanId() {
+        long id = ThreadLocalRandom.current().nextLong();
+        char[] chars = new char[16];
+        writeHex(chars, 0, id == 0 ? 1 : id);
+        return new String(chars);
+    }
+
+    /**
+     * 为本次请求建立链路上下文：沿用 traceparent 中的 trace-id 与 sampled 标志，生成网关这一跳的 span-id
+     *
+     * @param traceparent 请求中的 traceparent 头，可以为 null 或格式不合法
+     */
+    public TraceContext resolve(String traceparent) {
+        if (isValidTraceparent(traceparent)) {
+            boolean sampled = (Character.digit(traceparent.charAt(54), 16) & 1) == 1;
+            return new TraceContext(traceparent.substring(3, 35), generateSpanId(), sampled);
+        }
+        return new TraceContext(generateTraceId(), generateSpanId(), false);
+    }
+
+    /**
+     * 该请求是否输出 INFO 级别的请求日志：上游已标记 sampled 的请求总是输出，其余按 gateway.logging.sample-rate 采样
+     */
+    public boolean shouldLog(TraceContext context) {
+        return context.sampled() || logSampleRate >= 1.0
+                || (logSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < logSampleRate);
+    }
+
+    /**
+     * version 00 的 traceparent：00-{32 hex}-{16 hex}-{2 hex}，trace-id 与 parent-id 不能全为 0
+     */
+    static boolean isValidTraceparent(String value) {
+        if (value == null || value.length() != 55 || value.charAt(0) != '0' || value.charAt(1) != '0'
+                || value.charAt(2) != '-' || value.charAt(35) != '-' || value.charAt(52) != '-') {
+            return false;
+        }
+        return isLowerHex(value, 3, 35) && isLowerHex(value, 36, 52) && isLowerHex(value, 53, 55)
+                && !isAllZero(value, 3, 35) && !isAllZero(value, 36, 52);
+    }
+
+    private static boolean isLowerHex(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAllZero(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (value.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
     }
 }
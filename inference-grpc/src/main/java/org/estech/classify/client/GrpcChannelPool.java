@@ -0,0 +1,133 @@
+package org.estech.classify.client;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 到同一服务端的多个 gRPC 通道（各自一个 HTTP/2 连接），按轮询分配调用，避免所有请求挤在一个连接的流控窗口上。
+ * <p>
+ * 每个通道导出指标（标签 channel=序号）：grpc.client.channel.inflight（在途调用数）、
+ * grpc.client.channel.latency（按 method、status 区分的调用耗时）。
+ */
+@Slf4j
+public class GrpcChannelPool {
+
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<Channel> intercepted = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    public GrpcChannelPool(String host, int port, GrpcChannelPoolConfig config, MeterRegistry registry) {
+        for (int i = 0; i < config.getSize(); i++) {
+            ManagedChannel channel = NettyChannelBuilder.forAddress(host, port)
+                    .usePlaintext()
+                    // 长连接上的流在空闲时靠 keepalive 发现对端断开
+                    .keepAliveTime(config.getKeepAliveTime().toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveTimeout(config.getKeepAliveTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .initialFlowControlWindow(config.getFlowControlWindow())
+                    .maxInboundMessageSize(config.getMaxInboundMessageSize())
+                    .build();
+            channels.add(channel);
+            intercepted.add(ClientInterceptors.intercept(channel, new MetricsInterceptor(String.valueOf(i), registry)));
+        }
+        log.info("gRPC channel pool to {}:{}: size={}, keepAlive={}, flowControlWindow={}, maxInboundMessageSize={}",
+                host, port, config.getSize(), config.getKeepAliveTime(), config.getFlowControlWindow(),
+                config.getMaxInboundMessageSize());
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * 轮询选择下一个通道的序号
+     */
+    public int nextIndex() {
+        return Math.floorMod(next.getAndIncrement(), channels.size());
+    }
+
+    public Channel get(int index) {
+        return intercepted.get(index);
+    }
+
+    public Channel next() {
+        return get(nextIndex());
+    }
+
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    public void shutdown() {
+        channels.forEach(ManagedChannel::shutdownNow);
+    }
+
+    /**
+     * 统计一个通道的在途调用数与调用耗时；流式调用从开始到结束算一次。
+     * Timer 按 method、status 缓存，调用结束时不再经过注册表查找
+     */
+    private static class MetricsInterceptor implements ClientInterceptor {
+
+        private final String channel;
+        private final MeterRegistry registry;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+        MetricsInterceptor(String channel, MeterRegistry registry) {
+            this.channel = channel;
+            this.registry = registry;
+            Gauge.builder("grpc.client.channel.inflight", inFlight, AtomicInteger::get)
+                    .tag("channel", channel)
+                    .register(registry);
+        }
+
+        private Timer timer(String method, Status.Code status) {
+            return timers.computeIfAbsent(method + '/' + status.name(), k -> Timer.builder("grpc.client.channel.latency")
+                    .tag("channel", channel)
+                    .tag("method", method)
+                    .tag("status", status.name())
+                    .register(registry));
+        }
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                                   CallOptions callOptions, Channel next) {
+            return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    long start = System.nanoTime();
+                    inFlight.incrementAndGet();
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            inFlight.decrementAndGet();
+                            timer(method.getBareMethodName(), status.getCode())
+                                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                }
+            };
+        }
+    }
+}
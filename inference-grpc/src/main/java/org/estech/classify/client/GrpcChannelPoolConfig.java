@@ -0,0 +1,40 @@
+package org.estech.classify.client;
+
+import java.time.Duration;
+
+/**
+ * gRPC 通道池配置
+ */
+public class GrpcChannelPoolConfig {
+
+    private final int size;
+    private final Duration keepAliveTime;
+    private final Duration keepAliveTimeout;
+    private final int flowControlWindow;
+    private final int maxInboundMessageSize;
+
+    /**
+     * @param size                  通道（HTTP/2 连接）数，请求按轮询分配
+     * @param keepAliveTime         空闲多久发送 keepalive ping，需不小于服务端的 permit-keep-alive-time
+     * @param keepAliveTimeout      ping 无响应多久判定连接断开
+     * @param flowControlWindow     HTTP/2 初始流控窗口（字节），大图片 / 流水线发送时调大可减少等待 WINDOW_UPDATE
+     * @param maxInboundMessageSize 单个响应消息的上限（字节）
+     */
+    public GrpcChannelPoolConfig(int size, Duration keepAliveTime, Duration keepAliveTimeout,
+                                 int flowControlWindow, int maxInboundMessageSize) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        this.size = size;
+        this.keepAliveTime = keepAliveTime;
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.flowControlWindow = flowControlWindow;
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    public int getSize() { return size; }
+    public Duration getKeepAliveTime() { return keepAliveTime; }
+    public Duration getKeepAliveTimeout() { return keepAliveTimeout; }
+    public int getFlowControlWindow() { return flowControlWindow; }
+    public int getMaxInboundMessageSize() { return maxInboundMessageSize; }
+}
@@ -1,47 +1,95 @@
 package org.estech.classify.client;
 
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.estech.classify.BatchImageRequest;
+import org.estech.classify.BatchPredictionResponse;
 import org.estech.classify.ClassifierGrpc;
 import org.estech.classify.ImageRequest;
 import org.estech.classify.Prediction;
 import org.estech.classify.PredictionResponse;
+import org.estech.classify.SynsetRequest;
+import org.estech.classify.SynsetResponse;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.dto.ClassificationResult;
+import org.estech.common.exception.BusinessException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * 分类服务的 gRPC 客户端：
+ * <ul>
+ *   <li>{@link #predict} 一元调用，阻塞当前线程直到返回；</li>
+ *   <li>{@link #predictStream} 通过共享的 PredictStream 双向流异步发送，不占用线程，
+ *       多张图片在同一个 HTTP/2 stream 上流水线处理。</li>
+ * </ul>
+ * 调用按轮询分布到 {@link GrpcChannelPool} 的各个通道上，每个通道各有一条 PredictStream。
+ * <p>
+ * 图片字节用 UnsafeByteOperations.unsafeWrap 包装进请求，不再拷贝；调用方在调用返回
+ * （或 future 完成）前不能修改传入的数组。
+ */
 @Slf4j
 @Component
 public class GrpcClient {
 
-    private final ManagedChannel channel;
-    private final ClassifierGrpc.ClassifierBlockingStub blockingStub;
+    private final GrpcChannelPool channels;
+    private final int streamMaxInFlight;
+    private final long streamTimeoutMillis;
+
+    /** 每个通道一条 PredictStream */
+    private final AtomicReferenceArray<PredictStreamSession> sessions;
+
+    /** GetSynset 的结果，PredictBatch 返回的 synset_version 变化时重新获取 */
+    private volatile CompletableFuture<SynsetResponse> synset;
 
     public GrpcClient(@Value("${grpc.server.host}") String host,
-                      @Value("${grpc.server.port}") int port) {
-        this.channel = ManagedChannelBuilder.forAddress(host, port)
-                .usePlaintext()
-                .build();
-        this.blockingStub = ClassifierGrpc.newBlockingStub(channel);
+                      @Value("${grpc.server.port}") int port,
+                      @Value("${grpc.channel.pool-size:2}") int poolSize,
+                      @Value("${grpc.channel.keep-alive-time:30s}") Duration keepAliveTime,
+                      @Value("${grpc.channel.keep-alive-timeout:10s}") Duration keepAliveTimeout,
+                      @Value("${grpc.channel.flow-control-window:4MB}") DataSize flowControlWindow,
+                      @Value("${grpc.channel.max-inbound-message-size:4MB}") DataSize maxInboundMessageSize,
+                      @Value("${grpc.stream.max-in-flight:256}") int streamMaxInFlight,
+                      @Value("${grpc.stream.timeout-ms:10000}") long streamTimeoutMillis,
+                      MeterRegistry meterRegistry) {
+        this.channels = new GrpcChannelPool(host, port, new GrpcChannelPoolConfig(poolSize, keepAliveTime,
+                keepAliveTimeout, (int) flowControlWindow.toBytes(), (int) maxInboundMessageSize.toBytes()),
+                meterRegistry);
+        this.sessions = new AtomicReferenceArray<>(channels.size());
+        this.streamMaxInFlight = streamMaxInFlight;
+        this.streamTimeoutMillis = streamTimeoutMillis;
     }
 
     public PredictionResponse predict(MultipartFile file, int topK) throws IOException {
-        byte[] data = file.getBytes();
+        return predict(file.getBytes(), topK);
+    }
 
+    public PredictionResponse predict(byte[] data, int topK) {
         ImageRequest request = ImageRequest.newBuilder()
-                .setImage(com.google.protobuf.ByteString.copyFrom(data))
+                .setImage(UnsafeByteOperations.unsafeWrap(data))
                 .setTopk(topK)
                 .build();
 
         PredictionResponse resp;
         try {
-            resp = blockingStub
-                    .withDeadlineAfter(10, java.util.concurrent.TimeUnit.SECONDS)
+            resp = ClassifierGrpc.newBlockingStub(channels.next())
+                    .withDeadlineAfter(10, TimeUnit.SECONDS)
                     .predict(request);
         } catch (StatusRuntimeException e) {
             log.error("gRPC predict failed: {}", e.getStatus(), e);
@@ -51,10 +99,153 @@ public class GrpcClient {
         return resp;
     }
 
+    /**
+     * 在 PredictStream 上异步分类一张图片；每张图片单独超时（grpc.stream.timeout-ms），
+     * 所选通道的流上在途数超过 grpc.stream.max-in-flight 时返回的 future 以 SERVICE_BUSY 失败
+     */
+    public CompletableFuture<PredictionResponse> predictStream(byte[] data, int topK) {
+        return session(channels.nextIndex()).submit(data, topK);
+    }
+
+    /**
+     * 批量分类（PredictBatch）：一次请求发送多张图片，响应只含类别序号与分数，标签用缓存的标签表解析。
+     * 结果顺序与 images 一致；任意一张失败则整体失败。
+     */
+    public CompletableFuture<List<ClassificationResult>> predictBatch(List<byte[]> images, int topK) {
+        BatchImageRequest.Builder request = BatchImageRequest.newBuilder().setTopk(topK);
+        images.forEach(image -> request.addImages(UnsafeByteOperations.unsafeWrap(image)));
+
+        CompletableFuture<BatchPredictionResponse> response = new CompletableFuture<>();
+        ClassifierGrpc.newStub(channels.next())
+                .withDeadlineAfter(streamTimeoutMillis, TimeUnit.MILLISECONDS)
+                .predictBatch(request.build(), new FutureObserver<>(response));
+        return response.thenCompose(batch -> labels(batch.getSynsetVersion())
+                .thenApply(labels -> toResults(batch, labels)));
+    }
+
+    /**
+     * 与 version 一致的标签表。缓存的版本不同（服务端换了模型）时重新获取；
+     * 取回的版本仍不一致（获取请求在换模型前发出）时再取一次，还不一致则以 MODEL_ERROR 失败
+     */
+    private CompletableFuture<List<String>> labels(String version) {
+        return synset(version).thenCompose(response -> response.getVersion().equals(version)
+                ? CompletableFuture.completedFuture(response.getLabelsList())
+                : synset(version).thenApply(retry -> {
+                    if (!retry.getVersion().equals(version)) {
+                        throw new BusinessException(ErrorCodes.MODEL_ERROR, "Synset version " + retry.getVersion()
+                                + " does not match batch version " + version);
+                    }
+                    return retry.getLabelsList();
+                }));
+    }
+
+    /**
+     * 缓存的 GetSynset 结果；尚未获取、获取失败或已取回的版本与 version 不同时发起新的请求
+     */
+    private CompletableFuture<SynsetResponse> synset(String version) {
+        CompletableFuture<SynsetResponse> current = synset;
+        if (current == null || current.isCompletedExceptionally()
+                || (current.isDone() && !current.join().getVersion().equals(version))) {
+            synchronized (this) {
+                if (current == synset) {
+                    current = new CompletableFuture<>();
+                    ClassifierGrpc.newStub(channels.next())
+                            .withDeadlineAfter(10, TimeUnit.SECONDS)
+                            .getSynset(SynsetRequest.getDefaultInstance(), new FutureObserver<>(current));
+                    synset = current;
+                } else {
+                    current = synset;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static List<ClassificationResult> toResults(BatchPredictionResponse batch, List<String> labels) {
+        int topK = batch.getTopk();
+        int expected = batch.getErrorsCount() * topK;
+        if (batch.getIndicesCount() < expected || batch.getScoresCount() < expected) {
+            throw new BusinessException(ErrorCodes.MODEL_ERROR, "Malformed batch response: expected " + expected
+                    + " predictions, got " + batch.getIndicesCount());
+        }
+        List<ClassificationResult> results = new ArrayList<>(batch.getErrorsCount());
+        for (int i = 0; i < batch.getErrorsCount(); i++) {
+            if (!batch.getErrors(i).isEmpty()) {
+                throw new BusinessException(ErrorCodes.MODEL_ERROR, "Image " + i + ": " + batch.getErrors(i));
+            }
+            Map<String, Double> probs = new LinkedHashMap<>();
+            for (int j = i * topK; j < (i + 1) * topK; j++) {
+                int index = batch.getIndices(j);
+                if (index >= 0) {
+                    probs.put(label(labels, index), (double) batch.getScores(j));
+                }
+            }
+            // 按分数降序，第一个即最佳
+            int first = batch.getIndices(i * topK);
+            results.add(new ClassificationResult(first >= 0 ? label(labels, first) : null,
+                    batch.getScores(i * topK), probs));
+        }
+        return results;
+    }
+
+    private static String label(List<String> labels, int index) {
+        if (index >= labels.size()) {
+            throw new BusinessException(ErrorCodes.MODEL_ERROR, "Class index " + index
+                    + " is outside the synset (" + labels.size() + " labels)");
+        }
+        return labels.get(index);
+    }
+
+    /**
+     * 该通道当前的双向流，流已结束（出错、服务端关闭）时新建一个
+     */
+    private PredictStreamSession session(int index) {
+        PredictStreamSession current = sessions.get(index);
+        if (current != null && current.isOpen()) {
+            return current;
+        }
+        synchronized (sessions) {
+            current = sessions.get(index);
+            if (current == null || !current.isOpen()) {
+                current = new PredictStreamSession(streamMaxInFlight, streamTimeoutMillis);
+                ClassifierGrpc.newStub(channels.get(index)).predictStream(current);
+                sessions.set(index, current);
+                log.info("Opened PredictStream to {} on channel {}", channels.authority(), index);
+            }
+            return current;
+        }
+    }
+
     @PreDestroy
     public void shutdown() {
-        if (channel != null && !channel.isShutdown()) {
-            channel.shutdownNow();
+        synchronized (sessions) {
+            for (int i = 0; i < sessions.length(); i++) {
+                PredictStreamSession session = sessions.get(i);
+                if (session != null && session.isOpen()) {
+                    session.shutdown();
+                }
+            }
+        }
+        channels.shutdown();
+    }
+
+    /**
+     * 一元异步调用的结果转为 CompletableFuture
+     */
+    private record FutureObserver<T>(CompletableFuture<T> future) implements StreamObserver<T> {
+
+        @Override
+        public void onNext(T value) {
+            future.complete(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            future.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
         }
     }
 }
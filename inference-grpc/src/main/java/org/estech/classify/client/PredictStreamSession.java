@@ -0,0 +1,143 @@
+package org.estech.classify.client;
+
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.classify.PredictionResponse;
+import org.estech.classify.StreamImageRequest;
+import org.estech.classify.StreamPredictionResponse;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.exception.BusinessException;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一条 PredictStream 双向流：多个请求共用这个流，按 id 把响应交给对应的 future。
+ * <p>
+ * 发送受 gRPC 流控约束：stream 不可写（isReady 为 false）时请求留在队列中，
+ * 由 onReady 回调在对端读取后继续发送，不占用调用方线程。
+ * 流结束或出错后，所有未完成的请求以该错误结束，{@link GrpcClient} 下次调用时重新建流。
+ */
+@Slf4j
+class PredictStreamSession implements ClientResponseObserver<StreamImageRequest, StreamPredictionResponse> {
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, CompletableFuture<PredictionResponse>> pending = new ConcurrentHashMap<>();
+    private final Queue<StreamImageRequest> outbound = new ConcurrentLinkedQueue<>();
+    private final int maxInFlight;
+    private final long timeoutMillis;
+
+    private volatile ClientCallStreamObserver<StreamImageRequest> requestStream;
+    private volatile boolean closed;
+
+    PredictStreamSession(int maxInFlight, long timeoutMillis) {
+        this.maxInFlight = maxInFlight;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<StreamImageRequest> requestStream) {
+        this.requestStream = requestStream;
+        requestStream.setOnReadyHandler(this::drain);
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * 在流上发送一张图片，超过 maxInFlight 时直接失败
+     */
+    CompletableFuture<PredictionResponse> submit(byte[] image, int topK) {
+        if (pending.size() >= maxInFlight) {
+            return CompletableFuture.failedFuture(
+                    new BusinessException(ErrorCodes.SERVICE_BUSY, "Too many in-flight gRPC stream requests"));
+        }
+        long id = ids.incrementAndGet();
+        CompletableFuture<PredictionResponse> future = new CompletableFuture<>();
+        pending.put(id, future);
+        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((result, error) -> pending.remove(id));
+
+        outbound.add(StreamImageRequest.newBuilder()
+                .setId(id)
+                .setImage(UnsafeByteOperations.unsafeWrap(image))
+                .setTopk(topK)
+                .build());
+        if (closed) {
+            // 与 onError 竞争时，onError 可能已经清理过 pending
+            future.completeExceptionally(Status.UNAVAILABLE.withDescription("PredictStream closed").asRuntimeException());
+            return future;
+        }
+        drain();
+        return future;
+    }
+
+    /**
+     * StreamObserver 不是线程安全的，发送串行化；只在 stream 可写时发送
+     */
+    private void drain() {
+        synchronized (this) {
+            while (!closed && requestStream.isReady()) {
+                StreamImageRequest next = outbound.poll();
+                if (next == null) {
+                    return;
+                }
+                if (pending.containsKey(next.getId())) { // 已超时的请求不再发送
+                    requestStream.onNext(next);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onNext(StreamPredictionResponse response) {
+        CompletableFuture<PredictionResponse> future = pending.remove(response.getId());
+        if (future == null) {
+            return; // 已超时
+        }
+        if (!response.getError().isEmpty()) {
+            future.completeExceptionally(new BusinessException(ErrorCodes.MODEL_ERROR, response.getError()));
+        } else {
+            future.complete(PredictionResponse.newBuilder().addAllTopk(response.getTopkList()).build());
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.warn("PredictStream failed with {} pending requests: {}", pending.size(), Status.fromThrowable(t));
+        close(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        close(Status.UNAVAILABLE.withDescription("PredictStream completed by server").asRuntimeException());
+    }
+
+    /**
+     * 客户端关闭流（应用停止时）
+     */
+    void shutdown() {
+        synchronized (this) {
+            if (!closed) {
+                requestStream.onCompleted();
+            }
+        }
+        close(Status.CANCELLED.withDescription("Client shutdown").asRuntimeException());
+    }
+
+    private void close(Throwable cause) {
+        closed = true;
+        outbound.clear();
+        pending.values().forEach(future -> future.completeExceptionally(cause));
+        pending.clear();
+    }
+}
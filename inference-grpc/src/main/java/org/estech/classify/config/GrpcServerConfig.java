@@ -0,0 +1,135 @@
+package org.estech.classify.config;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.estech.classify.server.ClassifierService;
+import org.estech.classify.server.LocalGrpcServer;
+import org.estech.model.core.BatcherConfig;
+import org.estech.model.core.ModelManager;
+import org.estech.model.core.PredictorPoolConfig;
+import org.estech.model.service.ModelService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内的 Classifier gRPC 服务端（grpc.local-server.enabled=true 时启用），推理由本进程加载的模型完成，
+ * 省去到外部推理进程的一跳。本服务的 GrpcClient 指向 localhost 即可使用它，也可作为 gRPC 压测目标。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "grpc.local-server", name = "enabled", havingValue = "true")
+public class GrpcServerConfig {
+
+    public static final String EXECUTOR_VIRTUAL = "virtual";
+    public static final String EXECUTOR_FIXED = "fixed";
+
+    @Value("${grpc.local-server.port:50051}")
+    private int port;
+
+    @Value("${grpc.local-server.executor:" + EXECUTOR_VIRTUAL + "}")
+    private String executorType;
+
+    @Value("${grpc.local-server.threads:0}")
+    private int threads;
+
+    @Value("${grpc.local-server.max-concurrent-calls-per-connection:64}")
+    private int maxConcurrentCalls;
+
+    @Value("${grpc.local-server.max-inbound-message-size:8MB}")
+    private DataSize maxInboundMessageSize;
+
+    @Value("${grpc.local-server.keep-alive-time:30s}")
+    private Duration keepAliveTime;
+
+    @Value("${grpc.local-server.keep-alive-timeout:10s}")
+    private Duration keepAliveTimeout;
+
+    @Value("${grpc.local-server.permit-keep-alive-time:10s}")
+    private Duration permitKeepAliveTime;
+
+    @Value("${grpc.local-server.shutdown-grace:10s}")
+    private Duration shutdownGrace;
+
+    @Value("${grpc.local-server.stream-window:64}")
+    private int streamWindow;
+
+    @Value("${model.pool.size:0}")
+    private int poolSize;
+
+    @Value("${model.pool.borrow-timeout-ms:5000}")
+    private long borrowTimeoutMs;
+
+    @Value("${model.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${model.batch.max-size:8}")
+    private int batchMaxSize;
+
+    @Value("${model.batch.max-delay-ms:5}")
+    private long batchMaxDelayMs;
+
+    @Value("${model.batch.queue-capacity:256}")
+    private int batchQueueCapacity;
+
+    @Value("${model.batch.workers:1}")
+    private int batchWorkers;
+
+    @Value("${model.registry.catalog:" + ModelManager.DEFAULT_CATALOG + "}")
+    private String catalog;
+
+    @Bean
+    public ModelService modelService() throws Exception {
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ModelManager.configurePool(new PredictorPoolConfig(size, borrowTimeoutMs, false));
+        ModelManager.configureBatching(new BatcherConfig(batchEnabled, batchMaxSize, batchMaxDelayMs,
+                batchQueueCapacity, batchWorkers));
+        ModelManager.loadCatalog(catalog);
+        ModelManager.configurePyTorchThreads(0, 0);
+        return new ModelService();
+    }
+
+    @Bean
+    public LocalGrpcServer localGrpcServer(ModelService modelService) {
+        ExecutorService executor = createExecutor();
+        Server server = NettyServerBuilder.forPort(port)
+                .executor(executor)
+                .addService(new ClassifierService(modelService, streamWindow))
+                // 每个 HTTP/2 连接的并发 stream 上限（MAX_CONCURRENT_STREAMS），超出的调用在客户端排队
+                .maxConcurrentCallsPerConnection(maxConcurrentCalls)
+                .maxInboundMessageSize((int) maxInboundMessageSize.toBytes())
+                .keepAliveTime(keepAliveTime.toMillis(), TimeUnit.MILLISECONDS)
+                .keepAliveTimeout(keepAliveTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .permitKeepAliveTime(permitKeepAliveTime.toMillis(), TimeUnit.MILLISECONDS)
+                .permitKeepAliveWithoutCalls(true)
+                .build();
+        return new LocalGrpcServer(server, executor, shutdownGrace);
+    }
+
+    /**
+     * 执行 gRPC 回调（反序列化、解码图片）的线程：virtual 为每个调用一个虚拟线程；
+     * fixed 为固定大小的平台线程池（threads，0 为 CPU 核数）
+     */
+    private ExecutorService createExecutor() {
+        if (EXECUTOR_VIRTUAL.equals(executorType)) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-vt-", 0).factory());
+        }
+        if (!EXECUTOR_FIXED.equals(executorType)) {
+            throw new IllegalArgumentException("Unsupported grpc.local-server.executor: " + executorType);
+        }
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newFixedThreadPool(size, r -> {
+            Thread t = new Thread(r, "grpc-exec-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
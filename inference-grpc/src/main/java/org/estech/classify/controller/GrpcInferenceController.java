@@ -1,12 +1,20 @@
 package org.estech.classify.controller;
 
 import org.estech.classify.service.GrpcInferenceService;
+import org.estech.common.constants.ErrorCodes;
 import org.estech.common.dto.ClassificationResult;
+import org.estech.common.dto.ErrorResponse;
+import org.estech.common.exception.BusinessException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/rpc/inference")
 public class GrpcInferenceController {
@@ -24,4 +32,33 @@ public class GrpcInferenceController {
             @RequestParam(name = "topK", defaultValue = "5") int topK) throws Exception {
         return grpcInferenceService.predict(file, topK);
     }
+
+    /**
+     * 非阻塞版本：请求以异步 Servlet 处理，等待 gRPC 响应期间不占用请求线程
+     */
+    @PostMapping(value = "/predict-async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CompletableFuture<ClassificationResult> predictAsync(
+            @RequestPart("file") MultipartFile file,
+            @RequestParam(name = "topK", defaultValue = "5") int topK) throws Exception {
+        return grpcInferenceService.predictAsync(file.getBytes(), topK);
+    }
+
+    /**
+     * 批量分类，图片分组经 PredictBatch 发送（响应为紧凑的类别序号 + 分数）
+     */
+    @PostMapping(value = "/predict-batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CompletableFuture<List<ClassificationResult>> predictBatch(
+            @RequestPart("files") List<MultipartFile> files,
+            @RequestParam(name = "topK", defaultValue = "5") int topK) throws Exception {
+        return grpcInferenceService.predictAll(files, topK);
+    }
+
+    /**
+     * 流上在途请求已满返回 503，服务端报告的单张图片错误返回 502
+     */
+    @ExceptionHandler(BusinessException.class)
+    public ResponseEntity<ErrorResponse> handleBusinessException(BusinessException e) {
+        HttpStatus status = ErrorCodes.SERVICE_BUSY.equals(e.getCode()) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_GATEWAY;
+        return ResponseEntity.status(status).body(new ErrorResponse(e.getCode(), e.getMessage(), null));
+    }
 }
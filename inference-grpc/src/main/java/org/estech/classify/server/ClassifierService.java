@@ -0,0 +1,268 @@
+package org.estech.classify.server;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.classify.BatchImageRequest;
+import org.estech.classify.BatchPredictionResponse;
+import org.estech.classify.ClassifierGrpc;
+import org.estech.classify.ImageRequest;
+import org.estech.classify.Prediction;
+import org.estech.classify.PredictionResponse;
+import org.estech.classify.StreamImageRequest;
+import org.estech.classify.StreamPredictionResponse;
+import org.estech.classify.SynsetRequest;
+import org.estech.classify.SynsetResponse;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.dto.ClassificationResult;
+import org.estech.common.exception.BusinessException;
+import org.estech.model.core.ModelDefinition;
+import org.estech.model.service.ModelService;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Classifier 服务的 Java 实现，直接调用进程内的 {@link ModelService}（默认模型）。
+ * <p>
+ * 图片在 gRPC 执行器线程上解码，推理交给 ModelService（启用批处理时与其他请求合批），
+ * 等待推理期间不占用执行器线程。
+ */
+@Slf4j
+public class ClassifierService extends ClassifierGrpc.ClassifierImplBase {
+
+    private static final int DEFAULT_TOP_K = 5;
+
+    private final ModelService modelService;
+    /** 每条 PredictStream 上推理中与待发送的请求数上限 */
+    private final int streamWindow;
+
+    /** 当前默认模型的标签表，模型替换后按新的模型标识重新加载 */
+    private volatile Synset synset;
+
+    public ClassifierService(ModelService modelService, int streamWindow) {
+        this.modelService = modelService;
+        this.streamWindow = Math.max(1, streamWindow);
+    }
+
+    @Override
+    public void predict(ImageRequest request, StreamObserver<PredictionResponse> responseObserver) {
+        classify(request.getImage(), request.getTopk()).whenComplete((result, error) -> {
+            if (error != null) {
+                responseObserver.onError(toStatus(error).asRuntimeException());
+                return;
+            }
+            PredictionResponse.Builder response = PredictionResponse.newBuilder();
+            addPredictions(result, response::addTopk);
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        });
+    }
+
+    /**
+     * 每个请求独立推理，完成后按完成顺序返回；客户端结束发送且所有响应都已发出后结束流。
+     * <p>
+     * 发送受 gRPC 流控约束：stream 不可写（客户端读得慢）时响应留在队列中，由 onReady 回调继续发送。
+     * 读取请求也不再自动进行：推理中与待发送的请求合计不超过 streamWindow 个，每发出一个响应再读一个请求，
+     * 客户端不读响应时服务端不会无限积压结果。
+     */
+    @Override
+    public StreamObserver<StreamImageRequest> predictStream(StreamObserver<StreamPredictionResponse> responseObserver) {
+        ServerCallStreamObserver<StreamPredictionResponse> responses =
+                (ServerCallStreamObserver<StreamPredictionResponse>) responseObserver;
+        Queue<StreamPredictionResponse> outbound = new ConcurrentLinkedQueue<>();
+        // 推理中的请求数，另加 1 表示客户端尚未结束发送
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicBoolean finished = new AtomicBoolean();
+
+        // StreamObserver 不是线程安全的，推理完成回调与 onReady 来自不同线程，发送串行化；只在 stream 可写时发送
+        Runnable drain = () -> {
+            synchronized (responses) {
+                if (finished.get()) {
+                    return;
+                }
+                if (responses.isCancelled()) {
+                    outbound.clear();
+                    return;
+                }
+                while (responses.isReady()) {
+                    StreamPredictionResponse next = outbound.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    responses.onNext(next);
+                    responses.request(1);
+                }
+                if (outstanding.get() == 0 && outbound.isEmpty()) {
+                    finished.set(true);
+                    responses.onCompleted();
+                }
+            }
+        };
+        responses.disableAutoRequest();
+        responses.setOnReadyHandler(drain);
+        responses.request(streamWindow);
+
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(StreamImageRequest request) {
+                outstanding.incrementAndGet();
+                classify(request.getImage(), request.getTopk()).whenComplete((result, error) -> {
+                    StreamPredictionResponse.Builder response = StreamPredictionResponse.newBuilder().setId(request.getId());
+                    if (error != null) {
+                        response.setError(String.valueOf(toStatus(error).getDescription()));
+                    } else {
+                        addPredictions(result, response::addTopk);
+                    }
+                    // 先入队再减计数，drain 看到 0 时所有响应都已在队列中
+                    outbound.add(response.build());
+                    outstanding.decrementAndGet();
+                    drain.run();
+                });
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.debug("PredictStream cancelled by client: {}", Status.fromThrowable(t));
+                outbound.clear();
+            }
+
+            @Override
+            public void onCompleted() {
+                outstanding.decrementAndGet();
+                drain.run();
+            }
+        };
+    }
+
+    /**
+     * 批量分类：各图片分别提交给 ModelService（启用批处理时合批），全部完成后按请求顺序返回紧凑结果
+     */
+    @Override
+    public void predictBatch(BatchImageRequest request, StreamObserver<BatchPredictionResponse> responseObserver) {
+        Synset labels;
+        try {
+            labels = synset();
+        } catch (Exception e) {
+            responseObserver.onError(toStatus(e).asRuntimeException());
+            return;
+        }
+        int topK = Math.min(request.getTopk() > 0 ? request.getTopk() : DEFAULT_TOP_K, labels.labels().size());
+        List<CompletableFuture<ClassificationResult>> futures = request.getImagesList().stream()
+                .map(image -> classify(image, topK))
+                .toList();
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).whenComplete((v, ignored) -> {
+            BatchPredictionResponse.Builder response = BatchPredictionResponse.newBuilder()
+                    .setTopk(topK)
+                    .setSynsetVersion(labels.version());
+            for (CompletableFuture<ClassificationResult> future : futures) {
+                int written = 0;
+                if (future.isCompletedExceptionally()) {
+                    response.addErrors(String.valueOf(toStatus(future.exceptionNow()).getDescription()));
+                } else {
+                    response.addErrors("");
+                    for (Map.Entry<String, Double> entry : future.join().getTopK().entrySet()) {
+                        response.addIndices(labels.indexOf(entry.getKey()));
+                        response.addScores(entry.getValue().floatValue());
+                        written++;
+                    }
+                }
+                for (; written < topK; written++) {
+                    response.addIndices(-1);
+                    response.addScores(0f);
+                }
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        });
+    }
+
+    @Override
+    public void getSynset(SynsetRequest request, StreamObserver<SynsetResponse> responseObserver) {
+        try {
+            Synset labels = synset();
+            responseObserver.onNext(SynsetResponse.newBuilder()
+                    .setVersion(labels.version())
+                    .addAllLabels(labels.labels())
+                    .build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(toStatus(e).asRuntimeException());
+        }
+    }
+
+    private Synset synset() throws IOException {
+        // 版本与标签取自同一个定义，热替换时不会把新标签记在旧版本下
+        ModelDefinition definition = modelService.getDefinition(null);
+        String version = definition.getId();
+        Synset current = synset;
+        if (current == null || !current.version().equals(version)) {
+            current = Synset.of(version, modelService.getSynset(definition));
+            synset = current;
+        }
+        return current;
+    }
+
+    private CompletableFuture<ClassificationResult> classify(ByteString image, int topK) {
+        try {
+            return modelService.classifyAsync(image.newInput(), topK > 0 ? topK : DEFAULT_TOP_K);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void addPredictions(ClassificationResult result, Consumer<Prediction> sink) {
+        for (Map.Entry<String, Double> entry : result.getTopK().entrySet()) {
+            sink.accept(Prediction.newBuilder()
+                    .setLabel(entry.getKey())
+                    .setProb(entry.getValue().floatValue())
+                    .build());
+        }
+    }
+
+    /**
+     * 池/批处理队列已满返回 RESOURCE_EXHAUSTED（客户端可退避重试），图片无法解码返回 INVALID_ARGUMENT
+     */
+    private static Status toStatus(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof BusinessException e) {
+            return switch (e.getCode()) {
+                case ErrorCodes.SERVICE_BUSY -> Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage());
+                case ErrorCodes.INVALID_REQUEST, ErrorCodes.FILE_ERROR -> Status.INVALID_ARGUMENT.withDescription(e.getMessage());
+                default -> Status.INTERNAL.withDescription(e.getMessage());
+            };
+        }
+        if (cause instanceof IOException) {
+            return Status.INVALID_ARGUMENT.withDescription("Invalid image: " + cause.getMessage());
+        }
+        log.error("Classification failed", cause);
+        return Status.INTERNAL.withDescription(cause.toString());
+    }
+
+    private record Synset(String version, List<String> labels, Map<String, Integer> indices) {
+
+        static Synset of(String version, List<String> labels) {
+            Map<String, Integer> indices = new HashMap<>(labels.size() * 2);
+            for (int i = 0; i < labels.size(); i++) {
+                indices.put(labels.get(i), i);
+            }
+            return new Synset(version, List.copyOf(labels), indices);
+        }
+
+        int indexOf(String label) {
+            return indices.getOrDefault(label, -1);
+        }
+    }
+}
@@ -3,33 +3,114 @@ package org.estech.classify.service;
 import org.estech.classify.Prediction;
 import org.estech.classify.PredictionResponse;
 import org.estech.classify.client.GrpcClient;
+import org.estech.common.cache.ClassificationCache;
+import org.estech.common.constants.ErrorCodes;
 import org.estech.common.dto.ClassificationResult;
+import org.estech.common.exception.BusinessException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class GrpcInferenceService {
 
+    /** 缓存 key 中的模型标识：远端 gRPC 分类服务 */
+    private static final String MODEL_ID = "grpc-classifier";
+    /** 每个 PredictBatch 调用最多携带的图片数与字节数（需小于服务端的 max-inbound-message-size） */
+    private static final int BATCH_MAX_IMAGES = 32;
+    private static final long BATCH_MAX_BYTES = 4L * 1024 * 1024;
+    /** 一个批量请求同时在途的 PredictBatch 调用数 */
+    private static final int BATCH_CONCURRENCY = 4;
+
     private final GrpcClient grpcClient;
+    private final ClassificationCache cache;
 
-    public GrpcInferenceService(GrpcClient grpcClient) {
+    public GrpcInferenceService(GrpcClient grpcClient, ClassificationCache cache) {
         this.grpcClient = grpcClient;
+        this.cache = cache;
     }
 
     public ClassificationResult predict(MultipartFile file, int topK) throws Exception {
-        PredictionResponse resp = grpcClient.predict(file, topK);
-        Map<String, Double> probs = new LinkedHashMap<>();
-        for (Prediction p : resp.getTopkList()) {
-            probs.put(p.getLabel(), (double)p.getProb());
+        byte[] data = file.getBytes();
+        return cache.get(data, MODEL_ID, topK, () -> toResult(grpcClient.predict(data, topK)));
+    }
+
+    /**
+     * 异步分类：经 PredictStream 发送，不阻塞调用线程；命中缓存时直接返回
+     */
+    public CompletableFuture<ClassificationResult> predictAsync(byte[] data, int topK) {
+        return cache.getAsync(data, MODEL_ID, topK,
+                () -> grpcClient.predictStream(data, topK).thenApply(GrpcInferenceService::toResult));
+    }
+
+    /**
+     * 批量分类：图片按 BATCH_MAX_IMAGES / BATCH_MAX_BYTES 分组，每组一个 PredictBatch 调用，
+     * 同时最多 BATCH_CONCURRENCY 个调用在途。结果顺序与 files 一致，任意一张失败则整体失败。
+     * 批量结果不经过缓存。
+     */
+    public CompletableFuture<List<ClassificationResult>> predictAll(List<MultipartFile> files, int topK) throws IOException {
+        List<List<byte[]>> chunks = new ArrayList<>();
+        List<byte[]> chunk = new ArrayList<>();
+        long chunkBytes = 0;
+        for (MultipartFile file : files) {
+            byte[] image = file.getBytes();
+            if (!chunk.isEmpty() && (chunk.size() >= BATCH_MAX_IMAGES || chunkBytes + image.length > BATCH_MAX_BYTES)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(image);
+            chunkBytes += image.length;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
         }
 
-        var best = probs.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .orElseThrow();
+        List<List<ClassificationResult>> results = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+        AtomicInteger next = new AtomicInteger();
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int i = 0; i < Math.min(BATCH_CONCURRENCY, chunks.size()); i++) {
+            lanes.add(lane(chunks, topK, results, next));
+        }
+        return CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new))
+                .thenApply(v -> results.stream().flatMap(List::stream).toList());
+    }
+
+    /**
+     * 依次发送下一组，直到所有分组都已发送
+     */
+    private CompletableFuture<Void> lane(List<List<byte[]>> chunks, int topK,
+                                         List<List<ClassificationResult>> results, AtomicInteger next) {
+        int index = next.getAndIncrement();
+        if (index >= chunks.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return grpcClient.predictBatch(chunks.get(index), topK).thenCompose(chunkResults -> {
+            results.set(index, chunkResults);
+            return lane(chunks, topK, results, next);
+        });
+    }
 
-        return new ClassificationResult(best.getKey(), best.getValue(), probs);
+    private static ClassificationResult toResult(PredictionResponse resp) {
+        Map<String, Double> probs = new LinkedHashMap<>();
+        Prediction best = null;
+        for (Prediction p : resp.getTopkList()) {
+            probs.put(p.getLabel(), (double) p.getProb());
+            if (best == null || p.getProb() > best.getProb()) {
+                best = p;
+            }
+        }
+        if (best == null) {
+            throw new BusinessException(ErrorCodes.MODEL_ERROR, "Empty prediction response");
+        }
+        return new ClassificationResult(best.getLabel(), best.getProb(), probs);
     }
 }
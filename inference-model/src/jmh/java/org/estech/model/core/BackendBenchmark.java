@@ -0,0 +1,143 @@
+package org.estech.model.core;
+
+import ai.djl.inference.Predictor;
+import ai.djl.modality.Classifications;
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.djl.repository.zoo.ZooModel;
+import org.estech.model.config.ResNetModelConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 推理后端基准：同一逻辑模型、同一组图片，分别用 PyTorch 与 ONNX Runtime 推理，
+ * Throughput 模式给出吞吐，SampleTime 模式给出延迟分位数。
+ * <p>
+ * 每个 JMH 线程持有一个 Predictor，相当于 pool-size = 线程数；引擎选项按该并发度计算（见 ResNetModelConfig.resolveEngineOptions）。
+ * 图片目录通过 -Dbench.images=/path/to/jpgs 指定，不指定时使用合成图片。
+ * <p>
+ * mvn -Pbench -pl inference-model test-compile exec:exec -Djmh.include=BackendBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class BackendBenchmark {
+
+    @Param({ModelDefinition.ENGINE_PYTORCH, ModelDefinition.ENGINE_ONNX})
+    public String engine;
+
+    @Param({"1", "8"})
+    public int batchSize;
+
+    private ZooModel<Image, Classifications> model;
+    private List<Image> images;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) throws Exception {
+        ModelDefinition definition = defaultDefinition().withEngine(engine);
+        if (ModelDefinition.ENGINE_PYTORCH.equals(engine)) {
+            ModelManager.configurePool(new PredictorPoolConfig(params.getThreads(), 5000, false));
+            ModelManager.configurePyTorchThreads(0, 0);
+        }
+        model = ResNetModelConfig.loadModel(definition,
+                ResNetModelConfig.resolveEngineOptions(definition, params.getThreads()));
+        images = loadImages(definition.getImageSize());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        model.close();
+    }
+
+    @State(Scope.Thread)
+    public static class PredictorState {
+        Predictor<Image, Classifications> predictor;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(BackendBenchmark benchmark) {
+            predictor = benchmark.model.newPredictor();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            predictor.close();
+        }
+    }
+
+    @Benchmark
+    public List<Classifications> predict(PredictorState state) throws Exception {
+        List<Image> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(images.get(state.next++ % images.size()));
+        }
+        return state.predictor.batchPredict(batch);
+    }
+
+    private static ModelDefinition defaultDefinition() throws Exception {
+        try (InputStream input = BackendBenchmark.class.getClassLoader().getResourceAsStream(ModelManager.DEFAULT_CATALOG)) {
+            ModelDefinition.Catalog catalog = ModelDefinition.loadCatalog(input);
+            return catalog.models().stream()
+                    .filter(m -> m.getName().equals(catalog.defaultModel()))
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+
+    private static List<Image> loadImages(int size) throws Exception {
+        List<Image> images = new ArrayList<>();
+        String dir = System.getProperty("bench.images");
+        if (dir != null) {
+            try (Stream<Path> files = Files.list(Path.of(dir))) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    images.add(ImageFactory.getInstance().fromFile(file));
+                }
+            }
+        }
+        if (images.isEmpty()) {
+            for (int i = 0; i < 16; i++) {
+                images.add(ImageFactory.getInstance().fromImage(syntheticImage(size * 2, size * 2, i)));
+            }
+        }
+        return images;
+    }
+
+    private static BufferedImage syntheticImage(int width, int height, int seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + seed * 16) & 0xFF;
+                int g = y * 255 / height;
+                int b = (int) (128 + 60 * Math.sin((x + seed) / 7.0) * Math.cos(y / 5.0));
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+}
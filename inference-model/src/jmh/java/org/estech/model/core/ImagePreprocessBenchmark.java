@@ -0,0 +1,101 @@
+package org.estech.model.core;
+
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import org.estech.common.constants.ModelConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java 预处理基准：原 Translator 的实现（resize + getRGB + 逐像素归一化） vs {@link ImageNetPreprocessor}。
+ * 两者都只比较到 float[] 为止，NDManager.create 的拷贝开销相同，不计入。
+ * <p>
+ * mvn -Pbench -pl inference-model test-compile exec:exec -Djmh.include=ImagePreprocess
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImagePreprocessBenchmark {
+
+    @Param({"640x480", "1920x1080", "4000x3000"})
+    public String resolution;
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB"})
+    public String imageType;
+
+    private final int size = ModelConstants.IMAGE_SIZE;
+    private final ImageNetPreprocessor preprocessor = new ImageNetPreprocessor(size, size);
+
+    private Image image;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String[] wh = resolution.split("x");
+        int type = BufferedImage.class.getField(imageType).getInt(null);
+        image = ImageFactory.getInstance().fromImage(syntheticImage(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), type));
+    }
+
+    @Benchmark
+    public float[] legacyTranslator() {
+        int width = size;
+        int height = size;
+
+        float[] mean = {0.485f, 0.456f, 0.406f};
+        float[] std = {0.229f, 0.224f, 0.225f};
+
+        Image scaled = ImageFactory.getInstance().fromImage(image.getWrappedImage()).resize(width, height, true);
+        BufferedImage buffered = (BufferedImage) scaled.getWrappedImage();
+
+        int[] pixels = buffered.getRGB(0, 0, width, height, null, 0, width);
+        float[] data = new float[3 * width * height];
+
+        for (int i = 0; i < pixels.length; i++) {
+            int rgb = pixels[i];
+            int r = (rgb >> 16) & 0xFF;
+            int g = (rgb >> 8) & 0xFF;
+            int b = rgb & 0xFF;
+            int h = i / width, w = i % width, idx = h * width + w;
+            data[idx] = (r / 255f - mean[0]) / std[0];
+            data[width * height + idx] = (g / 255f - mean[1]) / std[1];
+            data[2 * width * height + idx] = (b / 255f - mean[2]) / std[2];
+        }
+        return data;
+    }
+
+    @Benchmark
+    public float[] preprocessor() {
+        return preprocessor.preprocess((BufferedImage) image.getWrappedImage());
+    }
+
+    /**
+     * 带渐变和纹理的合成图片，避免纯色图让缩放变得不真实地便宜
+     */
+    private static BufferedImage syntheticImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = y * 255 / height;
+                int b = (int) (128 + 60 * Math.sin(x / 7.0) * Math.cos(y / 5.0));
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+}
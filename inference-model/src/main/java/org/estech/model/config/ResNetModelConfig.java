@@ -4,7 +4,6 @@ import ai.djl.Device;
 import ai.djl.engine.Engine;
 import ai.djl.modality.Classifications;
 import ai.djl.modality.cv.Image;
-import ai.djl.modality.cv.ImageFactory;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.types.Shape;
@@ -13,7 +12,8 @@ import ai.djl.repository.zoo.ModelZoo;
 import ai.djl.repository.zoo.ZooModel;
 import ai.djl.translate.*;
 import lombok.extern.slf4j.Slf4j;
-import org.estech.common.constants.ModelConstants;
+import org.estech.model.core.ImageNetPreprocessor;
+import org.estech.model.core.ModelDefinition;
 
 import java.awt.image.BufferedImage;
 import java.io.*;
@@ -21,66 +21,113 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+/**
+ * 按 {@link ModelDefinition} 加载模型（最初只用于 ResNet18，现在对所有注册的模型通用）
+ */
 @Slf4j
 public class ResNetModelConfig {
 
-    private static final String MODEL_PATH = "models/resnet18/traced_resnet18.pt";
-    private static final String SYNSET_PATH = "models/resnet18/synset.txt";
-
     /**
-     * 从 classpath 加载模型（Image 模式）
+     * 加载模型（Image 模式）
+     *
+     * @param options 引擎选项，见 {@link #resolveEngineOptions(ModelDefinition, int)}
      */
-    public static ZooModel<Image, Classifications> loadModel() throws Exception {
-        log.info("Loaded DJL Engine: {}", Engine.getInstance().getEngineName());
+    public static ZooModel<Image, Classifications> loadModel(ModelDefinition definition,
+                                                             Map<String, String> options) throws Exception {
+        log.info("Loading model {} (Image mode), engine: {}, options: {}", definition,
+                Engine.getEngine(definition.getEngine()).getEngineName(), options);
 
-        List<String> synset = loadSynset();
-        Path modelPath = getModelPath();
+        List<String> synset = loadSynset(definition.getSynsetPath());
+        Path modelPath = getModelPath(definition.getModelPath());
 
-        Translator<Image, Classifications> translator = buildImageTranslator(synset);
+        Translator<Image, Classifications> translator = buildImageTranslator(synset, definition.getImageSize());
 
-        Criteria<Image, Classifications> criteria = Criteria.builder()
+        Criteria.Builder<Image, Classifications> builder = Criteria.builder()
                 .setTypes(Image.class, Classifications.class)
                 .optModelPath(modelPath)
                 .optTranslator(translator)
-                .optEngine("PyTorch")
-                .optDevice(Device.cpu())
-                .build();
+                .optEngine(definition.getEngine())
+                .optDevice(Device.cpu());
+        options.forEach(builder::optOption);
 
-        return ModelZoo.loadModel(criteria);
+        return ModelZoo.loadModel(builder.build());
     }
 
     /**
-     * 从 classpath 加载模型（NDList 模式）
+     * 加载模型（NDList 模式）
      */
-    public static ZooModel<NDList, Classifications> loadModelForNDList() throws Exception {
-        log.info("Loaded DJL Engine (NDList mode): {}", Engine.getInstance().getEngineName());
+    public static ZooModel<NDList, Classifications> loadModelForNDList(ModelDefinition definition,
+                                                                       Map<String, String> options) throws Exception {
+        log.info("Loading model {} (NDList mode), engine: {}, options: {}", definition,
+                Engine.getEngine(definition.getEngine()).getEngineName(), options);
 
-        List<String> synset = loadSynset();
-        Path modelPath = getModelPath();
+        List<String> synset = loadSynset(definition.getSynsetPath());
+        Path modelPath = getModelPath(definition.getModelPath());
 
         Translator<NDList, Classifications> translator = new NoOpTranslator(synset);
 
-        Criteria<NDList, Classifications> criteria = Criteria.builder()
+        Criteria.Builder<NDList, Classifications> builder = Criteria.builder()
                 .setTypes(NDList.class, Classifications.class)
                 .optModelPath(modelPath)
                 .optTranslator(translator)
-                .optEngine("PyTorch")
-                .optDevice(Device.cpu())
-                .build();
+                .optEngine(definition.getEngine())
+                .optDevice(Device.cpu());
+        options.forEach(builder::optOption);
 
-        return ModelZoo.loadModel(criteria);
+        return ModelZoo.loadModel(builder.build());
     }
 
     /**
-     * 读取 synset.txt，无论 jar 内外
+     * 计算传给引擎的选项：models.yaml 中显式配置的优先，其余按引擎补默认值。
+     * <p>
+     * ONNX Runtime 中同一模型的 Predictor 共享一个 session 及其 intra-op 线程池，并发 run 的调用线程自身也参与计算，
+     * 因此 intra-op 线程数取 CPU 核数 / 同时推理的 Predictor 数（启用批处理时为 workers，见
+     * {@link org.estech.model.core.ModelHandle#getConcurrentPredictors()}），避免线程过量或只用到一个核；inter-op 为 1（顺序执行图），
+     * 图优化级别为 ALL_OPT。PyTorch 的线程数是进程级的，见 {@link org.estech.model.core.ModelManager#configurePyTorchThreads}。
      */
-    private static List<String> loadSynset() throws IOException {
-        try (InputStream is = ResNetModelConfig.class.getClassLoader().getResourceAsStream(SYNSET_PATH)) {
+    public static Map<String, String> resolveEngineOptions(ModelDefinition definition, int concurrentPredictors) {
+        Map<String, String> options = new HashMap<>(definition.getOptions());
+        if (ModelDefinition.ENGINE_ONNX.equals(definition.getEngine())) {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            options.putIfAbsent("intraOpNumThreads", String.valueOf(Math.max(1, cpus / Math.max(1, concurrentPredictors))));
+            options.putIfAbsent("interOpNumThreads", "1");
+            options.putIfAbsent("optLevel", "ALL_OPT");
+        }
+        return options;
+    }
+
+    /**
+     * 模型文件大小（字节），用于内存占用估算；无法获取时返回 -1
+     */
+    public static long getModelSize(ModelDefinition definition) {
+        try {
+            Path file = Path.of(definition.getModelPath());
+            if (Files.isRegularFile(file)) {
+                return Files.size(file);
+            }
+            URL url = ResNetModelConfig.class.getClassLoader().getResource(definition.getModelPath());
+            return url == null ? -1 : url.openConnection().getContentLengthLong();
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 读取 synset：文件系统中存在时直接读取，否则从 classpath 读取（无论 jar 内外）
+     */
+    public static List<String> loadSynset(String synsetPath) throws IOException {
+        Path file = Path.of(synsetPath);
+        if (Files.isRegularFile(file)) {
+            return Files.readAllLines(file, StandardCharsets.UTF_8);
+        }
+        try (InputStream is = ResNetModelConfig.class.getClassLoader().getResourceAsStream(synsetPath)) {
             if (is == null) {
-                throw new FileNotFoundException("Resource not found: " + SYNSET_PATH);
+                throw new FileNotFoundException("Resource not found: " + synsetPath);
             }
             return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))
                     .lines()
@@ -89,19 +136,26 @@ public class ResNetModelConfig {
     }
 
     /**
-     * 获取模型路径：如果在 jar 内，则解压到临时文件再返回 Path
+     * 获取模型路径：文件系统中存在时直接使用；classpath 资源在 jar 内则解压到临时文件再返回 Path
      */
-    private static Path getModelPath() throws IOException {
-        URL modelUrl = ResNetModelConfig.class.getClassLoader().getResource(MODEL_PATH);
+    private static Path getModelPath(String resourcePath) throws IOException {
+        Path file = Path.of(resourcePath);
+        if (Files.isRegularFile(file)) {
+            return file;
+        }
+
+        URL modelUrl = ResNetModelConfig.class.getClassLoader().getResource(resourcePath);
         if (modelUrl == null) {
-            throw new FileNotFoundException("Resource not found: " + MODEL_PATH);
+            throw new FileNotFoundException("Resource not found: " + resourcePath);
         }
 
         String protocol = modelUrl.getProtocol();
         if ("jar".equals(protocol)) {
             log.info("Detected jar resource, extracting model to temp file...");
-            try (InputStream is = ResNetModelConfig.class.getClassLoader().getResourceAsStream(MODEL_PATH)) {
-                File tempFile = Files.createTempFile("resnet18-", ".pt").toFile();
+            String fileName = file.getFileName().toString();
+            String suffix = fileName.contains(".") ? fileName.substring(fileName.lastIndexOf('.')) : ".model";
+            try (InputStream is = ResNetModelConfig.class.getClassLoader().getResourceAsStream(resourcePath)) {
+                File tempFile = Files.createTempFile("model-", suffix).toFile();
                 tempFile.deleteOnExit();
                 try (OutputStream os = new FileOutputStream(tempFile)) {
                     is.transferTo(os);
@@ -116,36 +170,17 @@ public class ResNetModelConfig {
     }
 
     /**
-     * 图像输入的 Translator
+     * 图像输入的 Translator，预处理见 {@link ImageNetPreprocessor}
      */
-    private static Translator<Image, Classifications> buildImageTranslator(List<String> synset) {
+    private static Translator<Image, Classifications> buildImageTranslator(List<String> synset, int imageSize) {
+        ImageNetPreprocessor preprocessor = new ImageNetPreprocessor(imageSize, imageSize);
         return new Translator<>() {
             @Override
             public NDList processInput(TranslatorContext ctx, Image input) throws Exception {
-                int width = ModelConstants.IMAGE_SIZE;
-                int height = ModelConstants.IMAGE_SIZE;
-
-                float[] mean = {0.485f, 0.456f, 0.406f};
-                float[] std = {0.229f, 0.224f, 0.225f};
-
-                Image scaled = ImageFactory.getInstance().fromImage(input.getWrappedImage()).resize(width, height, true);
-                BufferedImage buffered = (BufferedImage) scaled.getWrappedImage();
-
-                int[] pixels = buffered.getRGB(0, 0, width, height, null, 0, width);
-                float[] data = new float[3 * width * height];
-
-                for (int i = 0; i < pixels.length; i++) {
-                    int rgb = pixels[i];
-                    int r = (rgb >> 16) & 0xFF;
-                    int g = (rgb >> 8) & 0xFF;
-                    int b = rgb & 0xFF;
-                    int h = i / width, w = i % width, idx = h * width + w;
-                    data[idx] = (r / 255f - mean[0]) / std[0];
-                    data[width * height + idx] = (g / 255f - mean[1]) / std[1];
-                    data[2 * width * height + idx] = (b / 255f - mean[2]) / std[2];
-                }
-
-                NDArray array = ctx.getNDManager().create(data, new Shape(3, height, width));
+                // data 为线程内复用的缓冲区，create 会拷贝到 native 内存，批处理时多次调用互不影响
+                float[] data = preprocessor.preprocess((BufferedImage) input.getWrappedImage());
+                NDArray array = ctx.getNDManager().create(data,
+                        new Shape(3, preprocessor.getHeight(), preprocessor.getWidth()));
                 return new NDList(array);
             }
 
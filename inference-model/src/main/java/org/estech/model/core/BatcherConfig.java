@@ -0,0 +1,42 @@
+package org.estech.model.core;
+
+/**
+ * 动态批处理配置
+ */
+public class BatcherConfig {
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final int queueCapacity;
+    private final int workerThreads;
+
+    /**
+     * @param enabled        是否启用动态批处理，关闭时每个请求单独推理
+     * @param maxBatchSize   单批最多请求数 N
+     * @param maxDelayMillis 批内第一个请求最多等待 T 毫秒
+     * @param queueCapacity  等待队列深度，队列满时直接拒绝
+     * @param workerThreads  可同时执行的批数量
+     */
+    public BatcherConfig(boolean enabled, int maxBatchSize, long maxDelayMillis,
+                         int queueCapacity, int workerThreads) {
+        if (maxBatchSize <= 0 || queueCapacity <= 0 || workerThreads <= 0) {
+            throw new IllegalArgumentException("maxBatchSize, queueCapacity and workerThreads must be positive");
+        }
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.queueCapacity = queueCapacity;
+        this.workerThreads = workerThreads;
+    }
+
+    public static BatcherConfig disabled() {
+        return new BatcherConfig(false, 8, 5, 256, 1);
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public int getMaxBatchSize() { return maxBatchSize; }
+    public long getMaxDelayMillis() { return maxDelayMillis; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public int getWorkerThreads() { return workerThreads; }
+}
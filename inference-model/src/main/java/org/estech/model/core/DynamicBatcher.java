@@ -0,0 +1,264 @@
+package org.estech.model.core;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.exception.BusinessException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 动态批处理：把并发到达的请求攒成一批（最多 N 个，或最多等待 T 毫秒），
+ * 用一次 Predictor.batchPredict 完成推理，再把结果分发给各自的调用方。
+ */
+@Slf4j
+public class DynamicBatcher<I, O> implements AutoCloseable {
+
+    private final String name;
+    private final PredictorPool<I, O> pool;
+    private final BatcherConfig config;
+
+    private final BlockingQueue<Task<I, O>> queue;
+    private final Semaphore workerPermits;
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final MeterRegistry registry = Metrics.globalRegistry;
+    private final Timer queueWaitTimer;
+    private final Timer batchTimer;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter rejectedCounter;
+    private final List<Meter> meters = new ArrayList<>();
+
+    public DynamicBatcher(String name, PredictorPool<I, O> pool, BatcherConfig config) {
+        this.name = name;
+        this.pool = pool;
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.workerPermits = new Semaphore(config.getWorkerThreads());
+
+        AtomicInteger workerIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(config.getWorkerThreads(), r -> {
+            Thread t = new Thread(r, "batch-" + name + "-worker-" + workerIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Tags tags = Tags.of("batcher", name);
+        this.queueWaitTimer = Timer.builder("model.batch.queue.wait")
+                .description("Time a request waits in the batch queue")
+                .tags(tags).register(registry);
+        this.batchTimer = Timer.builder("model.batch.inference")
+                .description("Time of one batchPredict call")
+                .tags(tags).register(registry);
+        this.batchSizeSummary = DistributionSummary.builder("model.batch.size")
+                .description("Number of requests per executed batch")
+                .tags(tags).register(registry);
+        this.rejectedCounter = Counter.builder("model.batch.rejected")
+                .description("Requests rejected because the batch queue was full")
+                .tags(tags).register(registry);
+        meters.add(queueWaitTimer);
+        meters.add(batchTimer);
+        meters.add(batchSizeSummary);
+        meters.add(rejectedCounter);
+        meters.add(Gauge.builder("model.batch.queue.depth", queue, BlockingQueue::size)
+                .tags(tags).register(registry));
+
+        this.dispatcher = new Thread(this::dispatchLoop, "batch-" + name + "-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+
+        log.info("Dynamic batcher [{}] started: maxBatchSize={}, maxDelay={}ms, queueCapacity={}, workers={}",
+                name, config.getMaxBatchSize(), config.getMaxDelayMillis(),
+                config.getQueueCapacity(), config.getWorkerThreads());
+    }
+
+    /**
+     * 提交一个推理请求；队列已满时立即返回失败的 future，不阻塞调用线程。
+     * <p>
+     * 返回的 future 在任务还未被取出执行时可以 cancel：任务从队列移除，之后不会再读取 input；
+     * 已经开始推理时 cancel 返回 false，input 在 future 完成前仍可能被使用。
+     */
+    public CompletableFuture<O> submit(I input) {
+        Task<I, O> task = new Task<>(input, queue);
+        if (!running || !queue.offer(task)) {
+            rejectedCounter.increment();
+            return CompletableFuture.failedFuture(new BusinessException(ErrorCodes.SERVICE_BUSY,
+                    "Batch queue [" + name + "] is full"));
+        }
+        return task.future;
+    }
+
+    private void dispatchLoop() {
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxDelayMillis());
+        int maxBatchSize = config.getMaxBatchSize();
+
+        while (running) {
+            try {
+                // 先拿到执行槽位再攒批：所有 worker 都忙时，请求会在队列里自然攒成更大的批
+                workerPermits.acquire();
+                List<Task<I, O>> batch = new ArrayList<>(maxBatchSize);
+                try {
+                    Task<I, O> first = queue.take();
+                    batch.add(first);
+                    long deadline = first.enqueuedAt + maxDelayNanos;
+                    while (batch.size() < maxBatchSize) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if (batch.size() >= maxBatchSize || remaining <= 0) {
+                            break;
+                        }
+                        Task<I, O> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    workers.execute(() -> runBatch(batch));
+                } catch (Throwable t) {
+                    workerPermits.release();
+                    batch.forEach(task -> task.future.completeExceptionally(t));
+                    if (t instanceof InterruptedException) {
+                        throw (InterruptedException) t;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void runBatch(List<Task<I, O>> batch) {
+        try {
+            long now = System.nanoTime();
+            List<Task<I, O>> live = new ArrayList<>(batch.size());
+            for (Task<I, O> task : batch) {
+                // 调用方已取消（等待超时、响应式订阅被取消）的请求不再推理
+                if (task.future.claim()) {
+                    queueWaitTimer.record(now - task.enqueuedAt, TimeUnit.NANOSECONDS);
+                    live.add(task);
+                }
+            }
+            if (live.isEmpty()) {
+                return;
+            }
+
+            List<I> inputs = new ArrayList<>(live.size());
+            live.forEach(task -> inputs.add(task.input));
+            batchSizeSummary.record(inputs.size());
+
+            try (PredictorPool.Lease<I, O> predictor = pool.borrow()) {
+                List<O> outputs;
+                try {
+                    outputs = batchTimer.recordCallable(() -> predictor.batchPredict(inputs));
+                } catch (Exception e) {
+                    if (live.size() == 1) {
+                        throw e;
+                    }
+                    // 无法确定是哪个输入导致失败，逐个重试，只让出错的请求失败
+                    log.warn("Batch [{}] of {} request(s) failed, retrying one by one: {}", name, live.size(), e.toString());
+                    for (Task<I, O> task : live) {
+                        try {
+                            task.future.complete(predictor.predict(task.input));
+                        } catch (Exception single) {
+                            task.future.completeExceptionally(single);
+                        }
+                    }
+                    return;
+                }
+                for (int i = 0; i < live.size(); i++) {
+                    live.get(i).future.complete(outputs.get(i));
+                }
+            }
+        } catch (Throwable t) {
+            log.error("Batch [{}] of {} request(s) failed: {}", name, batch.size(), t.getMessage(), t);
+            batch.forEach(task -> task.future.completeExceptionally(t));
+            if (t instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            workerPermits.release();
+        }
+    }
+
+    public String getName() { return name; }
+    public int getQueueDepth() { return queue.size(); }
+    public int getQueueCapacity() { return config.getQueueCapacity(); }
+
+    /**
+     * 等待队列已满，新提交的请求会被拒绝
+     */
+    public boolean isSaturated() {
+        return queue.size() >= config.getQueueCapacity();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        workers.shutdown();
+        BusinessException closed = new BusinessException(ErrorCodes.SERVICE_BUSY, "Batcher [" + name + "] is closed");
+        Task<I, O> task;
+        while ((task = queue.poll()) != null) {
+            task.future.completeExceptionally(closed);
+        }
+        meters.forEach(registry::remove);
+        log.info("Dynamic batcher [{}] closed", name);
+    }
+
+    private static final class Task<I, O> {
+        private final I input;
+        private final long enqueuedAt = System.nanoTime();
+        private final TaskFuture<O> future;
+
+        private Task(I input, Queue<Task<I, O>> queue) {
+            this.input = input;
+            this.future = new TaskFuture<>(() -> queue.remove(this));
+        }
+    }
+
+    /**
+     * 任务的 future：执行前 cancel 会把任务移出队列；worker 取出任务时先 claim，两者只有一个成功
+     */
+    private static final class TaskFuture<O> extends CompletableFuture<O> {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final Runnable onCancel;
+
+        private TaskFuture(Runnable onCancel) {
+            this.onCancel = onCancel;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true) && !isDone();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!claimed.compareAndSet(false, true)) {
+                return isCancelled();
+            }
+            onCancel.run();
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package org.estech.model.core;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * 纯 Java 的 ImageNet 预处理：缩放到 width x height 并输出归一化后的 CHW float。
+ * <p>
+ * 直接读取 DataBufferByte / DataBufferInt，不经过 getRGB；归一化用每通道 256 项查找表完成；
+ * 缩放与归一化在同一遍中完成（三角滤波，缩小时放宽支撑区间，效果接近面积平均）。
+ * 所有中间缓冲区按线程复用，返回的数组在同一线程下一次调用前有效。
+ */
+public final class ImageNetPreprocessor {
+
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
+
+    /** LUT[c * 256 + v] = (v / 255 - mean[c]) / std[c] */
+    private static final float[] LUT = buildLut();
+
+    private final int width;
+    private final int height;
+    private final ThreadLocal<Scratch> scratch;
+
+    public ImageNetPreprocessor(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(width, height));
+    }
+
+    /**
+     * @return CHW 格式的 float 数组（长度 3 * height * width），为线程内复用的缓冲区
+     */
+    public float[] preprocess(BufferedImage image) {
+        Scratch s = scratch.get();
+        BufferedImage src = isFastPath(image) ? image : s.convert(image);
+        s.tx.build(width, src.getWidth());
+        s.ty.build(height, src.getHeight());
+
+        Raster raster = src.getRaster();
+        if (raster.getDataBuffer() instanceof DataBufferByte) {
+            resampleBytes(raster, s);
+        } else {
+            resampleInts(raster, s);
+        }
+        return s.output;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    private void resampleBytes(Raster raster, Scratch s) {
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+        byte[] data = buffer.getData();
+        int pixelStride = sm.getPixelStride();
+        int scanline = sm.getScanlineStride();
+        int[] bandOffsets = sm.getBandOffsets();
+        int rOff = bandOffsets[0];
+        int gOff = bandOffsets[1];
+        int bOff = bandOffsets[2];
+
+        int colMin = s.tx.first[0];
+        int spanPixels = s.tx.first[width - 1] + s.tx.count[width - 1] - colMin;
+        float[] acc = s.row(spanPixels * 3);
+        float[] lut = LUT;
+
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(acc, 0, spanPixels * 3, 0f);
+            int wBase = y * s.ty.maxTaps;
+            for (int k = 0; k < s.ty.count[y]; k++) {
+                float wk = s.ty.weight[wBase + k];
+                int p = buffer.getOffset() + (s.ty.first[y] + k) * scanline + colMin * pixelStride;
+                for (int a = 0, end = spanPixels * 3; a < end; a += 3, p += pixelStride) {
+                    acc[a] += wk * lut[data[p + rOff] & 0xFF];
+                    acc[a + 1] += wk * lut[256 + (data[p + gOff] & 0xFF)];
+                    acc[a + 2] += wk * lut[512 + (data[p + bOff] & 0xFF)];
+                }
+            }
+            horizontal(acc, colMin, y, s);
+        }
+    }
+
+    private void resampleInts(Raster raster, Scratch s) {
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int[] data = buffer.getData();
+        int scanline = sm.getScanlineStride();
+        int[] bitOffsets = sm.getBitOffsets();
+        int rShift = bitOffsets[0];
+        int gShift = bitOffsets[1];
+        int bShift = bitOffsets[2];
+
+        int colMin = s.tx.first[0];
+        int spanPixels = s.tx.first[width - 1] + s.tx.count[width - 1] - colMin;
+        float[] acc = s.row(spanPixels * 3);
+        float[] lut = LUT;
+
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(acc, 0, spanPixels * 3, 0f);
+            int wBase = y * s.ty.maxTaps;
+            for (int k = 0; k < s.ty.count[y]; k++) {
+                float wk = s.ty.weight[wBase + k];
+                int p = buffer.getOffset() + (s.ty.first[y] + k) * scanline + colMin;
+                for (int a = 0, end = spanPixels * 3; a < end; a += 3, p++) {
+                    int pixel = data[p];
+                    acc[a] += wk * lut[(pixel >>> rShift) & 0xFF];
+                    acc[a + 1] += wk * lut[256 + ((pixel >>> gShift) & 0xFF)];
+                    acc[a + 2] += wk * lut[512 + ((pixel >>> bShift) & 0xFF)];
+                }
+            }
+            horizontal(acc, colMin, y, s);
+        }
+    }
+
+    /**
+     * 横向采样，结果写入 CHW 输出的第 y 行
+     */
+    private void horizontal(float[] acc, int colMin, int y, Scratch s) {
+        float[] out = s.output;
+        int plane = width * height;
+        int base = y * width;
+        for (int x = 0; x < width; x++) {
+            int wBase = x * s.tx.maxTaps;
+            int a = (s.tx.first[x] - colMin) * 3;
+            float r = 0f, g = 0f, b = 0f;
+            for (int k = 0; k < s.tx.count[x]; k++, a += 3) {
+                float wk = s.tx.weight[wBase + k];
+                r += wk * acc[a];
+                g += wk * acc[a + 1];
+                b += wk * acc[a + 2];
+            }
+            out[base + x] = r;
+            out[plane + base + x] = g;
+            out[2 * plane + base + x] = b;
+        }
+    }
+
+    /**
+     * 能否直接读取 Raster：8 bit sRGB 的交错字节或打包 int，非预乘，无子图偏移
+     */
+    private static boolean isFastPath(BufferedImage image) {
+        ColorModel cm = image.getColorModel();
+        Raster raster = image.getRaster();
+        if (cm.isAlphaPremultiplied() || !cm.getColorSpace().isCS_sRGB()
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            return false;
+        }
+        if (cm instanceof ComponentColorModel
+                && raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel sm) {
+            return sm.getNumBands() >= 3 && cm.getComponentSize(0) == 8;
+        }
+        if (cm instanceof DirectColorModel dcm
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            return dcm.getRedMask() >>> Integer.numberOfTrailingZeros(dcm.getRedMask()) == 0xFF
+                    && dcm.getGreenMask() >>> Integer.numberOfTrailingZeros(dcm.getGreenMask()) == 0xFF
+                    && dcm.getBlueMask() >>> Integer.numberOfTrailingZeros(dcm.getBlueMask()) == 0xFF;
+        }
+        return false;
+    }
+
+    private static float[] buildLut() {
+        float[] lut = new float[3 * 256];
+        for (int c = 0; c < 3; c++) {
+            for (int v = 0; v < 256; v++) {
+                lut[c * 256 + v] = (v / 255f - MEAN[c]) / STD[c];
+            }
+        }
+        return lut;
+    }
+
+    /**
+     * 一维重采样权重，源尺寸不变时复用
+     */
+    private static final class Taps {
+        int[] first;
+        int[] count;
+        float[] weight;
+        int maxTaps;
+        private int outN = -1;
+        private int srcN = -1;
+
+        void build(int outN, int srcN) {
+            if (outN == this.outN && srcN == this.srcN) {
+                return;
+            }
+            double scale = (double) outN / srcN;
+            double support = scale >= 1.0 ? 1.0 : 1.0 / scale;
+            double filterScale = Math.min(scale, 1.0);
+
+            maxTaps = (int) Math.ceil(2.0 * support) + 2;
+            first = new int[outN];
+            count = new int[outN];
+            weight = new float[outN * maxTaps];
+
+            for (int o = 0; o < outN; o++) {
+                double center = (o + 0.5) / scale;
+                int lo = (int) Math.floor(center - support);
+                int hi = (int) Math.ceil(center + support);
+                int f = Math.max(lo, 0);
+                int l = Math.min(hi - 1, srcN - 1);
+                int base = o * maxTaps;
+                double sum = 0.0;
+                for (int i = lo; i < hi; i++) {
+                    double wt = 1.0 - Math.abs(center - (i + 0.5)) * filterScale;
+                    if (wt <= 0.0) {
+                        continue;
+                    }
+                    int ci = Math.min(Math.max(i, 0), srcN - 1);  // 边缘像素复制
+                    weight[base + ci - f] += (float) wt;
+                    sum += wt;
+                }
+                for (int k = 0; k <= l - f; k++) {
+                    weight[base + k] = (float) (weight[base + k] / sum);
+                }
+                first[o] = f;
+                count[o] = l - f + 1;
+            }
+            this.outN = outN;
+            this.srcN = srcN;
+        }
+    }
+
+    private static final class Scratch {
+        /** 超过该像素数的转换图（约 3 MB）用完即丢，不随线程常驻 */
+        private static final long MAX_RETAINED_CONVERTED_PIXELS = 1024 * 1024;
+
+        final Taps tx = new Taps();
+        final Taps ty = new Taps();
+        final float[] output;
+        float[] row = new float[0];
+        BufferedImage converted;
+
+        Scratch(int width, int height) {
+            this.output = new float[3 * width * height];
+        }
+
+        float[] row(int length) {
+            if (row.length < length) {
+                row = new float[length];
+            }
+            return row;
+        }
+
+        /**
+         * 非快速路径的图片（索引色、灰度、CMYK 等）先画到 3BYTE_BGR 图上；小图复用同一张，大图每次新建
+         */
+        BufferedImage convert(BufferedImage image) {
+            BufferedImage target;
+            if ((long) image.getWidth() * image.getHeight() > MAX_RETAINED_CONVERTED_PIXELS) {
+                target = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+            } else {
+                if (converted == null || converted.getWidth() != image.getWidth()
+                        || converted.getHeight() != image.getHeight()) {
+                    converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+                }
+                target = converted;
+            }
+            Graphics2D g = target.createGraphics();
+            try {
+                g.drawImage(image, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            return target;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.estech.model.core;
+
+import org.estech.common.constants.ModelConstants;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个可注册的模型：名称、版本、推理引擎、模型文件与 synset、输入尺寸。
+ * <p>
+ * 同一逻辑模型可以为每个引擎提供各自的文件（artifacts），切换 engine 即可在 PyTorch / ONNX Runtime 间选择；
+ * options 原样作为 DJL Criteria 选项传给引擎（例如 ONNX Runtime 的 intraOpNumThreads、optLevel）。
+ * <p>
+ * variant 选择量化等变体（variants 中按引擎区分的文件，如 int8）；配置了 min-agreement 时，注册时会与 fp32 模型
+ * 在 gate-images 上比对 top-1 一致率，低于阈值则拒绝加载，见 {@link VariantEvaluator}。
+ */
+public class ModelDefinition {
+
+    public static final String ENGINE_PYTORCH = "PyTorch";
+    public static final String ENGINE_ONNX = "OnnxRuntime";
+
+    /** 原始精度的模型，即 path / artifacts 指向的文件 */
+    public static final String VARIANT_FP32 = "fp32";
+
+    private final String name;
+    private final String version;
+    private final String engine;
+    private final String modelPath;
+    private final String synsetPath;
+    private final int imageSize;
+    private final int poolSize;
+    private final Map<String, String> artifacts;
+    private final Map<String, String> options;
+    private final String variant;
+    private final Map<String, Map<String, String>> variants;
+    private final double minAgreement;
+    private final String gateImages;
+
+    public ModelDefinition(String name, String version, String engine, String modelPath,
+                           String synsetPath, int imageSize, int poolSize) {
+        this(name, version, engine, modelPath, synsetPath, imageSize, poolSize, Map.of(), Map.of());
+    }
+
+    public ModelDefinition(String name, String version, String engine, String modelPath,
+                           String synsetPath, int imageSize, int poolSize,
+                           Map<String, String> artifacts, Map<String, String> options) {
+        this(name, version, engine, modelPath, synsetPath, imageSize, poolSize, artifacts, options,
+                VARIANT_FP32, Map.of(), 0, null);
+    }
+
+    /**
+     * @param modelPath  classpath 资源路径或文件系统路径（文件存在时优先）
+     * @param synsetPath 同上
+     * @param poolSize   该模型 Predictor 池大小，0 表示使用全局配置
+     * @param artifacts    按引擎区分的模型文件，未列出的引擎使用 modelPath
+     * @param options      引擎选项
+     * @param variant      使用的变体，fp32 表示原始模型
+     * @param variants     变体名 -> 引擎 -> 模型文件
+     * @param minAgreement 变体与 fp32 的最低 top-1 一致率（0~1），0 表示不校验
+     * @param gateImages   校验用的本地图片目录
+     */
+    public ModelDefinition(String name, String version, String engine, String modelPath,
+                           String synsetPath, int imageSize, int poolSize,
+                           Map<String, String> artifacts, Map<String, String> options,
+                           String variant, Map<String, Map<String, String>> variants, double minAgreement,
+                           String gateImages) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Model name is required");
+        }
+        if (!ENGINE_PYTORCH.equals(engine) && !ENGINE_ONNX.equals(engine)) {
+            throw new IllegalArgumentException("Unsupported engine for model [" + name + "]: " + engine);
+        }
+        this.name = name;
+        this.version = version;
+        this.engine = engine;
+        this.modelPath = modelPath;
+        this.synsetPath = synsetPath;
+        this.imageSize = imageSize;
+        this.poolSize = poolSize;
+        if (!VARIANT_FP32.equals(variant)) {
+            if (!variants.containsKey(variant)) {
+                throw new IllegalArgumentException("Model [" + name + "] has no variant: " + variant);
+            }
+            // 变体文件与引擎绑定，例如 int8 的 .pt 不能交给 ONNX Runtime
+            if (!variants.get(variant).containsKey(engine)) {
+                throw new IllegalArgumentException("Model [" + name + "] variant " + variant
+                        + " has no file for engine " + engine);
+            }
+        }
+        this.artifacts = Map.copyOf(artifacts);
+        this.options = Map.copyOf(options);
+        this.variant = variant;
+        Map<String, Map<String, String>> copy = new LinkedHashMap<>();
+        variants.forEach((key, files) -> copy.put(key, Map.copyOf(files)));
+        this.variants = Collections.unmodifiableMap(copy);
+        this.minAgreement = minAgreement;
+        this.gateImages = gateImages;
+    }
+
+    /**
+     * 同一模型换用另一个引擎（使用该引擎对应的 artifact）
+     */
+    public ModelDefinition withEngine(String engine) {
+        return new ModelDefinition(name, version, engine, modelPath, synsetPath, imageSize, poolSize, artifacts, options,
+                variant, variants, minAgreement, gateImages);
+    }
+
+    /**
+     * 同一模型换用另一个变体（fp32 为原始模型）
+     */
+    public ModelDefinition withVariant(String variant) {
+        return new ModelDefinition(name, version, engine, modelPath, synsetPath, imageSize, poolSize, artifacts, options,
+                variant, variants, minAgreement, gateImages);
+    }
+
+    /**
+     * 解析 models.yaml 中的一项，字段名与 yaml 一致（image-size、pool-size 可省略）
+     */
+    public static ModelDefinition fromMap(Map<String, Object> map) {
+        String engine = (String) map.getOrDefault("engine", ENGINE_PYTORCH);
+        return new ModelDefinition(
+                (String) map.get("name"),
+                String.valueOf(map.getOrDefault("version", "1")),
+                engine,
+                (String) map.get("path"),
+                (String) map.get("synset"),
+                ((Number) map.getOrDefault("image-size", ModelConstants.IMAGE_SIZE)).intValue(),
+                ((Number) map.getOrDefault("pool-size", 0)).intValue(),
+                toStringMap(map.get("artifacts")),
+                toStringMap(map.get("options")),
+                (String) map.getOrDefault("variant", VARIANT_FP32),
+                toVariantMap(map.get("variants"), engine),
+                ((Number) map.getOrDefault("min-agreement", 0)).doubleValue(),
+                (String) map.get("gate-images"));
+    }
+
+    /**
+     * variants 的每一项可以按引擎给出文件（int8: {PyTorch: a.pt, OnnxRuntime: a.onnx}），
+     * 也可以直接给一个文件，此时只属于该模型配置的 engine
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, String>> toVariantMap(Object value, String engine) {
+        Map<String, Map<String, String>> result = new LinkedHashMap<>();
+        if (value instanceof Map<?, ?> map) {
+            ((Map<Object, Object>) map).forEach((k, v) -> result.put(String.valueOf(k),
+                    v instanceof Map<?, ?> ? toStringMap(v) : Map.of(engine, String.valueOf(v))));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> toStringMap(Object value) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (value instanceof Map<?, ?> map) {
+            ((Map<Object, Object>) map).forEach((k, v) -> result.put(String.valueOf(k), String.valueOf(v)));
+        }
+        return result;
+    }
+
+    /**
+     * 读取模型目录：
+     * <pre>
+     * default: resnet18
+     * models:
+     *   - name: resnet18
+     *     path: models/resnet18/traced_resnet18.pt
+     *     synset: models/resnet18/synset.txt
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public static Catalog loadCatalog(InputStream input) {
+        Map<String, Object> data = new Yaml().load(input);
+        List<ModelDefinition> models = new ArrayList<>();
+        for (Map<String, Object> item : (List<Map<String, Object>>) data.get("models")) {
+            models.add(fromMap(item));
+        }
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("Model catalog contains no models");
+        }
+        String defaultModel = (String) data.getOrDefault("default", models.get(0).getName());
+        return new Catalog(defaultModel, Collections.unmodifiableList(models));
+    }
+
+    /**
+     * 缓存、日志、指标中使用的模型标识：name:version，非 fp32 变体追加变体名（如 resnet18:1-int8）
+     */
+    public String getId() {
+        return VARIANT_FP32.equals(variant) ? name + ":" + version : name + ":" + version + "-" + variant;
+    }
+
+    public String getName() { return name; }
+    public String getVersion() { return version; }
+    public String getEngine() { return engine; }
+    /**
+     * 当前引擎与变体使用的模型文件
+     */
+    public String getModelPath() {
+        if (!VARIANT_FP32.equals(variant)) {
+            return variants.get(variant).get(engine);
+        }
+        return artifacts.getOrDefault(engine, modelPath);
+    }
+    public String getSynsetPath() { return synsetPath; }
+    public int getImageSize() { return imageSize; }
+    public int getPoolSize() { return poolSize; }
+    public Map<String, String> getOptions() { return options; }
+    public String getVariant() { return variant; }
+    public double getMinAgreement() { return minAgreement; }
+    public String getGateImages() { return gateImages; }
+
+    @Override
+    public String toString() {
+        return getId() + "[" + engine + ", " + getModelPath() + ", " + imageSize + "x" + imageSize + "]";
+    }
+
+    public record Catalog(String defaultModel, List<ModelDefinition> models) {}
+}
@@ -0,0 +1,248 @@
+package org.estech.model.core;
+
+import ai.djl.modality.Classifications;
+import ai.djl.modality.cv.Image;
+import ai.djl.ndarray.NDList;
+import ai.djl.repository.zoo.ZooModel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.model.config.ResNetModelConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个已注册模型的运行时：Image / NDList 两种模式的 ZooModel、各自的 Predictor 池与批处理器，均按需创建。
+ * <p>
+ * 采用引用计数：注册表持有一个引用，每个请求通过 {@link ModelManager#acquire(String)} 再持有一个，
+ * 用完 close() 归还。卸载或替换时注册表释放自己的引用，最后一个在途请求归还后才真正释放资源，
+ * 因此热加载/卸载不会打断或阻塞正在进行的推理。
+ */
+@Slf4j
+public class ModelHandle implements AutoCloseable {
+
+    private final ModelDefinition definition;
+    private final PredictorPoolConfig poolConfig;
+    private final BatcherConfig batcherConfig;
+    private final long modelBytes;
+    private final int concurrentPredictors;
+    private final Map<String, String> engineOptions;
+
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private final List<Meter> meters = new ArrayList<>();
+
+    private volatile ZooModel<Image, Classifications> imageModel;
+    private volatile ZooModel<NDList, Classifications> ndListModel;
+    private volatile PredictorPool<Image, Classifications> imagePool;
+    private volatile PredictorPool<NDList, Classifications> ndListPool;
+    private volatile DynamicBatcher<Image, Classifications> imageBatcher;
+    private volatile DynamicBatcher<NDList, Classifications> ndListBatcher;
+    private boolean closed;
+
+    ModelHandle(ModelDefinition definition, PredictorPoolConfig poolConfig, BatcherConfig batcherConfig) {
+        this.definition = definition;
+        this.poolConfig = definition.getPoolSize() > 0
+                ? new PredictorPoolConfig(definition.getPoolSize(), poolConfig.getBorrowTimeoutMillis(),
+                poolConfig.isThreadAffinity())
+                : poolConfig;
+        this.batcherConfig = batcherConfig;
+        this.modelBytes = ResNetModelConfig.getModelSize(definition);
+        this.concurrentPredictors = ModelManager.concurrentPredictors(this.poolConfig, batcherConfig);
+        this.engineOptions = ResNetModelConfig.resolveEngineOptions(definition, concurrentPredictors);
+
+        meters.add(Gauge.builder("model.memory.estimated", this, ModelHandle::getEstimatedBytes)
+                .description("Estimated memory held by loaded model weights")
+                .baseUnit("bytes")
+                .tag("model", definition.getId())
+                .register(Metrics.globalRegistry));
+    }
+
+    public ModelDefinition getDefinition() { return definition; }
+    public boolean isBatchingEnabled() { return batcherConfig.isEnabled(); }
+    /** 同时执行推理的 Predictor 数，用于分配引擎的 intra-op 线程 */
+    public int getConcurrentPredictors() { return concurrentPredictors; }
+
+    /**
+     * 已加载权重的估算内存：模型文件大小 x 已加载的 ZooModel 数量（Image / NDList 模式各加载一份）
+     */
+    public long getEstimatedBytes() {
+        int loaded = (imageModel != null ? 1 : 0) + (ndListModel != null ? 1 : 0);
+        return modelBytes < 0 ? 0 : modelBytes * loaded;
+    }
+
+    public ZooModel<Image, Classifications> getImageModel() throws Exception {
+        if (imageModel == null) {
+            synchronized (this) {
+                checkOpen();
+                if (imageModel == null) {
+                    imageModel = timedLoad("image", () -> ResNetModelConfig.loadModel(definition, engineOptions));
+                }
+            }
+        }
+        return imageModel;
+    }
+
+    public ZooModel<NDList, Classifications> getNDListModel() throws Exception {
+        if (ndListModel == null) {
+            synchronized (this) {
+                checkOpen();
+                if (ndListModel == null) {
+                    ndListModel = timedLoad("ndlist", () -> ResNetModelConfig.loadModelForNDList(definition, engineOptions));
+                }
+            }
+        }
+        return ndListModel;
+    }
+
+    public PredictorPool<Image, Classifications> getImagePool() throws Exception {
+        if (imagePool == null) {
+            ZooModel<Image, Classifications> model = getImageModel();
+            synchronized (this) {
+                checkOpen();
+                if (imagePool == null) {
+                    imagePool = new PredictorPool<>(definition.getId() + "-image", model, poolConfig);
+                }
+            }
+        }
+        return imagePool;
+    }
+
+    public PredictorPool<NDList, Classifications> getNDListPool() throws Exception {
+        if (ndListPool == null) {
+            ZooModel<NDList, Classifications> model = getNDListModel();
+            synchronized (this) {
+                checkOpen();
+                if (ndListPool == null) {
+                    ndListPool = new PredictorPool<>(definition.getId() + "-ndlist", model, poolConfig);
+                }
+            }
+        }
+        return ndListPool;
+    }
+
+    public DynamicBatcher<Image, Classifications> getImageBatcher() throws Exception {
+        if (imageBatcher == null) {
+            PredictorPool<Image, Classifications> pool = getImagePool();
+            synchronized (this) {
+                checkOpen();
+                if (imageBatcher == null) {
+                    imageBatcher = new DynamicBatcher<>(definition.getId() + "-image", pool, batcherConfig);
+                }
+            }
+        }
+        return imageBatcher;
+    }
+
+    public DynamicBatcher<NDList, Classifications> getNDListBatcher() throws Exception {
+        if (ndListBatcher == null) {
+            PredictorPool<NDList, Classifications> pool = getNDListPool();
+            synchronized (this) {
+                checkOpen();
+                if (ndListBatcher == null) {
+                    ndListBatcher = new DynamicBatcher<>(definition.getId() + "-ndlist", pool, batcherConfig);
+                }
+            }
+        }
+        return ndListBatcher;
+    }
+
+    /**
+     * Image 模式的批处理队列已满（批处理器尚未创建时为 false，不会因此触发加载）
+     */
+    public boolean isImageBatchSaturated() {
+        DynamicBatcher<Image, Classifications> batcher = imageBatcher;
+        return batcher != null && batcher.isSaturated();
+    }
+
+    /**
+     * 为已持有的句柄再取一个引用（异步推理需要比调用方持有得更久时），用完同样 close()
+     */
+    public ModelHandle share() {
+        if (!retain()) {
+            throw new IllegalStateException("Model [" + definition.getId() + "] has been unloaded.");
+        }
+        return this;
+    }
+
+    /**
+     * 增加一个引用；已释放（卸载且无在途请求）时返回 false
+     */
+    boolean retain() {
+        while (true) {
+            int current = refs.get();
+            if (current == 0) {
+                return false;
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还一个引用，最后一个引用归还时释放全部资源
+     */
+    @Override
+    public void close() {
+        if (refs.decrementAndGet() == 0) {
+            release();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Model [" + definition.getId() + "] has been unloaded.");
+        }
+    }
+
+    private <T> T timedLoad(String mode, Callable<T> loader) throws Exception {
+        long start = System.nanoTime();
+        T model = loader.call();
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("model.load.duration")
+                .description("Time spent loading a model")
+                .tag("model", definition.getId() + "-" + mode)
+                .register(Metrics.globalRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Model [{}] ({} mode) loaded in {} ms", definition.getId(), mode,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return model;
+    }
+
+    private synchronized void release() {
+        closed = true;
+        if (imageBatcher != null) {
+            imageBatcher.close();
+            imageBatcher = null;
+        }
+        if (ndListBatcher != null) {
+            ndListBatcher.close();
+            ndListBatcher = null;
+        }
+        if (imagePool != null) {
+            imagePool.close();
+            imagePool = null;
+        }
+        if (ndListPool != null) {
+            ndListPool.close();
+            ndListPool = null;
+        }
+        if (imageModel != null) {
+            imageModel.close();
+            imageModel = null;
+        }
+        if (ndListModel != null) {
+            ndListModel.close();
+            ndListModel = null;
+        }
+        meters.forEach(Metrics.globalRegistry::remove);
+        log.info("Model [{}] released", definition.getId());
+    }
+}
@@ -1,47 +1,239 @@
 package org.estech.model.core;
 
-import ai.djl.modality.Classifications;
-import ai.djl.modality.cv.Image;
-import ai.djl.repository.zoo.ZooModel;
-import org.estech.model.config.ResNetModelConfig;
-import ai.djl.ndarray.NDList;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.exception.BusinessException;
 
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 模型注册表：按名称管理多个模型（各自的引擎、输入尺寸、synset、Predictor 池与批处理器）。
+ * <p>
+ * 未显式注册时，第一次使用会从 classpath 的 models.yaml 读取模型目录。请求通过 {@link #acquire(String)}
+ * 按名称（null 为默认模型）获取 {@link ModelHandle}，用完 close() 归还。
+ */
+@Slf4j
 public class ModelManager {
-    private static volatile ZooModel<Image, Classifications> imageModel;
-    private static volatile ZooModel<NDList, Classifications> ndListModel;
+
+    public static final String DEFAULT_CATALOG = "models.yaml";
+
+    private static final Map<String, ModelHandle> models = new ConcurrentHashMap<>();
+    private static volatile String defaultModel;
+
+    private static volatile PredictorPoolConfig poolConfig = PredictorPoolConfig.defaults();
+    private static volatile BatcherConfig batcherConfig = BatcherConfig.disabled();
 
     private ModelManager() {}
 
-    public static ZooModel<Image, Classifications> getImageModel() throws Exception {
-        if (imageModel == null) {
-            synchronized (ModelManager.class) {
-                if (imageModel == null) {
-                    imageModel = ResNetModelConfig.loadModel();
-                }
+    /**
+     * 设置 Predictor 池参数，对之后注册的模型生效
+     */
+    public static void configurePool(PredictorPoolConfig config) {
+        if (!models.isEmpty()) {
+            log.warn("Models already registered, new pool config only applies to models registered later");
+        }
+        poolConfig = config;
+    }
+
+    /**
+     * 设置动态批处理参数，对之后注册的模型生效
+     */
+    public static void configureBatching(BatcherConfig config) {
+        if (!models.isEmpty()) {
+            log.warn("Models already registered, new batching config only applies to models registered later");
+        }
+        batcherConfig = config;
+    }
+
+    /**
+     * 设置 PyTorch 的 intra-op / inter-op 线程数（进程级，需在 PyTorch 引擎初始化前调用）。
+     * <p>
+     * 0 表示自动：intra-op 取 CPU 核数 / 同时推理的 Predictor 数，使并发推理的线程总数约等于核数；inter-op 取 1。
+     * 同时推理数取已注册 PyTorch 模型中的最大值（考虑各模型的 pool-size 与批处理 workers），
+     * 因此应在 {@link #loadCatalog(String)} 之后、模型加载之前调用；尚未注册模型时按全局配置估算。
+     * 已通过 -Dai.djl.pytorch.num_threads 等显式设置时不覆盖。
+     */
+    public static void configurePyTorchThreads(int numThreads, int interopThreads) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int intra = numThreads > 0 ? numThreads : Math.max(1, cpus / pyTorchConcurrency());
+        int inter = interopThreads > 0 ? interopThreads : 1;
+        if (System.getProperty("ai.djl.pytorch.num_threads") == null) {
+            System.setProperty("ai.djl.pytorch.num_threads", String.valueOf(intra));
+        }
+        if (System.getProperty("ai.djl.pytorch.num_interop_threads") == null) {
+            System.setProperty("ai.djl.pytorch.num_interop_threads", String.valueOf(inter));
+        }
+        log.info("PyTorch threads: intra-op={}, inter-op={}",
+                System.getProperty("ai.djl.pytorch.num_threads"), System.getProperty("ai.djl.pytorch.num_interop_threads"));
+    }
+
+    /**
+     * 一个模型同时执行推理的 Predictor 数：启用批处理时推理只在批处理 worker 上执行，为 min(workers, 池大小)，
+     * 否则为池大小
+     */
+    static int concurrentPredictors(PredictorPoolConfig pool, BatcherConfig batcher) {
+        return batcher.isEnabled() ? Math.min(batcher.getWorkerThreads(), pool.getMaxSize()) : pool.getMaxSize();
+    }
+
+    private static int pyTorchConcurrency() {
+        return models.values().stream()
+                .filter(handle -> ModelDefinition.ENGINE_PYTORCH.equals(handle.getDefinition().getEngine()))
+                .mapToInt(ModelHandle::getConcurrentPredictors)
+                .max()
+                .orElse(concurrentPredictors(poolConfig, batcherConfig));
+    }
+
+    public static boolean isBatchingEnabled() {
+        return batcherConfig.isEnabled();
+    }
+
+    /**
+     * 同步调用等待推理结果的上限：凑批最多 max-delay，工作线程借用 Predictor 最多 borrow-timeout，
+     * 推理本身与前面批次的排队再留一个 borrow-timeout
+     */
+    public static long getAwaitTimeoutMillis() {
+        return 2 * poolConfig.getBorrowTimeoutMillis() + (batcherConfig.isEnabled() ? batcherConfig.getMaxDelayMillis() : 0);
+    }
+
+    /**
+     * 从 classpath 读取模型目录并注册其中所有模型（只注册，权重在第一次使用或预热时加载；配置了 min-agreement 的变体在注册时校验）
+     */
+    public static synchronized void loadCatalog(String resource) throws Exception {
+        try (InputStream input = ModelManager.class.getClassLoader().getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new FileNotFoundException("Resource not found: " + resource);
+            }
+            ModelDefinition.Catalog catalog = ModelDefinition.loadCatalog(input);
+            for (ModelDefinition definition : catalog.models()) {
+                register(definition, false);
             }
+            setDefaultModel(catalog.defaultModel());
         }
-        return imageModel;
     }
 
-    public static ZooModel<NDList, Classifications> getNDListModel() throws Exception {
-        if (ndListModel == null) {
-            synchronized (ModelManager.class) {
-                if (ndListModel == null) {
-                    ndListModel = ResNetModelConfig.loadModelForNDList();
-                }
+    /**
+     * 注册（或替换同名的）模型。替换时旧模型在最后一个在途请求结束后才释放。
+     * 量化等变体先在调用线程上与 fp32 对比（{@link VariantEvaluator#gate(ModelDefinition)}），未通过则不注册；
+     * 对比本身出错（如 gate-images 读取失败）同样不注册，重新注册时会再次对比。
+     *
+     * @param eager 为 true 时先在调用线程加载好 Image 模式的模型与 Predictor 池，再对外可见
+     */
+    public static void register(ModelDefinition definition, boolean eager) throws Exception {
+        VariantEvaluator.gate(definition);
+        ModelHandle handle = new ModelHandle(definition, poolConfig, batcherConfig);
+        if (eager) {
+            try {
+                handle.getImagePool();
+            } catch (Exception e) {
+                handle.close();
+                throw e;
             }
         }
-        return ndListModel;
+
+        ModelHandle previous;
+        synchronized (ModelManager.class) {
+            previous = models.get(definition.getName());
+            if (previous != null && previous.getDefinition().getId().equals(definition.getId())) {
+                handle.close();
+                throw new IllegalArgumentException("Model " + definition.getId()
+                        + " is already registered, bump the version to replace it");
+            }
+            models.put(definition.getName(), handle);
+            if (defaultModel == null) {
+                defaultModel = definition.getName();
+            }
+        }
+        if (previous != null) {
+            previous.close();
+            log.info("Model [{}] replaced by {}", previous.getDefinition().getId(), definition);
+        } else {
+            log.info("Model registered: {}", definition);
+        }
+    }
+
+    /**
+     * 卸载模型；正在进行的请求不受影响，资源在其结束后释放
+     */
+    public static synchronized boolean unload(String name) {
+        if (name.equals(defaultModel)) {
+            throw new IllegalStateException("Cannot unload the default model [" + name + "]");
+        }
+        ModelHandle handle = models.remove(name);
+        if (handle == null) {
+            return false;
+        }
+        handle.close();
+        log.info("Model [{}] unloaded", handle.getDefinition().getId());
+        return true;
     }
 
-    public static void close() {
-        if (imageModel != null) {
-            imageModel.close();
-            imageModel = null;
+    public static synchronized void setDefaultModel(String name) {
+        if (!models.containsKey(name)) {
+            throw new IllegalArgumentException("Unknown model: " + name);
         }
-        if (ndListModel != null) {
-            ndListModel.close();
-            ndListModel = null;
+        defaultModel = name;
+    }
+
+    public static String getDefaultModel() {
+        ensureInitialized();
+        return defaultModel;
+    }
+
+    public static Set<String> getModelNames() {
+        ensureInitialized();
+        return Set.copyOf(models.keySet());
+    }
+
+    /**
+     * @param name 模型名称，null 表示默认模型
+     */
+    public static ModelDefinition getDefinition(String name) {
+        try (ModelHandle handle = acquire(name)) {
+            return handle.getDefinition();
         }
     }
+
+    /**
+     * 获取模型并持有一个引用，调用方必须 close() 归还（推荐 try-with-resources）
+     *
+     * @param name 模型名称，null 表示默认模型
+     */
+    public static ModelHandle acquire(String name) {
+        ensureInitialized();
+        String key = name != null ? name : defaultModel;
+        while (true) {
+            ModelHandle handle = models.get(key);
+            if (handle == null) {
+                throw new BusinessException(ErrorCodes.INVALID_REQUEST, "Unknown model: " + key);
+            }
+            if (handle.retain()) {
+                return handle;
+            }
+            // 恰好被替换/卸载，重新读取注册表
+        }
+    }
+
+    private static void ensureInitialized() {
+        if (models.isEmpty()) {
+            synchronized (ModelManager.class) {
+                if (models.isEmpty()) {
+                    try {
+                        loadCatalog(DEFAULT_CATALOG);
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Failed to load model catalog " + DEFAULT_CATALOG, e);
+                    }
+                }
+            }
+        }
+    }
+
+    public static synchronized void close() {
+        models.values().forEach(ModelHandle::close);
+        models.clear();
+        defaultModel = null;
+    }
 }
@@ -0,0 +1,108 @@
+package org.estech.model.core;
+
+import ai.djl.modality.Classifications;
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * 启动预热：提前加载模型、创建池中全部 Predictor，并用合成输入跑若干次推理，
+ * 让模型解压、TorchScript 加载与 JIT 优化都发生在接流量之前。
+ */
+@Slf4j
+public final class ModelWarmup {
+
+    private ModelWarmup() {}
+
+    /**
+     * 预热注册表中的所有模型
+     *
+     * @param iterations 每个 Predictor 在每个批大小上执行的推理次数，0 表示只加载不推理
+     * @param batchSizes 需要预热的批大小（一般为 1 和 model.batch.max-size）
+     */
+    public static void run(int iterations, int[] batchSizes) throws Exception {
+        for (String name : ModelManager.getModelNames()) {
+            run(name, iterations, batchSizes);
+        }
+    }
+
+    /**
+     * 预热单个模型（例如热加载新模型之后）
+     */
+    public static void run(String model, int iterations, int[] batchSizes) throws Exception {
+        try (ModelHandle handle = ModelManager.acquire(model)) {
+            PredictorPool<Image, Classifications> imagePool = handle.getImagePool();
+            PredictorPool<NDList, Classifications> ndListPool = handle.getNDListPool();
+            if (handle.isBatchingEnabled()) {
+                handle.getImageBatcher();
+                handle.getNDListBatcher();
+            }
+
+            int size = handle.getDefinition().getImageSize();
+            Image image = ImageFactory.getInstance().fromImage(syntheticImage(size));
+            warmUp(imagePool, iterations, batchSizes, n -> Collections.nCopies(n, image));
+
+            try (NDManager manager = handle.getNDListModel().getNDManager().newSubManager()) {
+                NDList input = new NDList(manager.randomNormal(new Shape(3, size, size)));
+                warmUp(ndListPool, iterations, batchSizes, n -> Collections.nCopies(n, input));
+            }
+        }
+    }
+
+    /**
+     * 同时借出池中全部 Predictor，确保每个 Predictor 都被创建并预热
+     */
+    private static <I> void warmUp(PredictorPool<I, Classifications> pool, int iterations, int[] batchSizes,
+                                   IntFunction<List<I>> inputs) throws Exception {
+        long start = System.nanoTime();
+        List<PredictorPool.Lease<I, Classifications>> leases = new ArrayList<>();
+        try {
+            for (int i = 0; i < pool.getConfig().getMaxSize(); i++) {
+                leases.add(pool.borrow());
+            }
+            for (PredictorPool.Lease<I, Classifications> lease : leases) {
+                for (int batchSize : batchSizes) {
+                    List<I> batch = inputs.apply(batchSize);
+                    for (int i = 0; i < iterations; i++) {
+                        lease.batchPredict(batch);
+                    }
+                }
+            }
+        } finally {
+            leases.forEach(PredictorPool.Lease::close);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("model.warmup.duration")
+                .description("Time spent warming up a predictor pool")
+                .tag("pool", pool.getName())
+                .register(Metrics.globalRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Predictor pool [{}] warmed up: {} predictor(s), {} iteration(s) x batch sizes {} in {} ms",
+                pool.getName(), leases.size(), iterations, Arrays.toString(batchSizes),
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private static BufferedImage syntheticImage(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, ((x * 255 / size) << 16) | ((y * 255 / size) << 8) | ((x + y) & 0xFF));
+            }
+        }
+        return image;
+    }
+}
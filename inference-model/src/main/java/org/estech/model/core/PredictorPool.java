@@ -0,0 +1,181 @@
+package org.estech.model.core;
+
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.TranslateException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.exception.BusinessException;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 有界 Predictor 池：按需创建、借用/归还复用，避免每次请求都 newPredictor()/close()。
+ * <p>
+ * DJL 的 Predictor 不是线程安全的，因此同一时刻一个 Predictor 只会借给一个调用方。
+ */
+@Slf4j
+public class PredictorPool<I, O> implements AutoCloseable {
+
+    private final String name;
+    private final ZooModel<I, O> model;
+    private final PredictorPoolConfig config;
+
+    private final Semaphore permits;
+    private final Deque<Predictor<I, O>> idle = new ConcurrentLinkedDeque<>();
+    private final ThreadLocal<Predictor<I, O>> lastUsed = new ThreadLocal<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final MeterRegistry registry = Metrics.globalRegistry;
+    private final Timer waitTimer;
+    private final List<Meter> meters = new ArrayList<>();
+
+    public PredictorPool(String name, ZooModel<I, O> model, PredictorPoolConfig config) {
+        this.name = name;
+        this.model = model;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+
+        Tags tags = Tags.of("pool", name);
+        this.waitTimer = Timer.builder("model.predictor.pool.wait")
+                .description("Time spent waiting to borrow a predictor")
+                .tags(tags)
+                .register(registry);
+        meters.add(waitTimer);
+        meters.add(Gauge.builder("model.predictor.pool.active", active, AtomicInteger::get)
+                .tags(tags).register(registry));
+        meters.add(Gauge.builder("model.predictor.pool.idle", idle, Deque::size)
+                .tags(tags).register(registry));
+        meters.add(Gauge.builder("model.predictor.pool.size", created, AtomicInteger::get)
+                .tags(tags).register(registry));
+        meters.add(Gauge.builder("model.predictor.pool.utilization", this,
+                        p -> (double) p.active.get() / p.config.getMaxSize())
+                .tags(tags).register(registry));
+
+        log.info("Predictor pool [{}] created: maxSize={}, borrowTimeout={}ms, threadAffinity={}",
+                name, config.getMaxSize(), config.getBorrowTimeoutMillis(), config.isThreadAffinity());
+    }
+
+    /**
+     * 借用一个 Predictor，使用完毕后必须 close() 归还（推荐 try-with-resources）
+     */
+    public Lease<I, O> borrow() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Predictor pool [" + name + "] is closed.");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired = permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS);
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            throw new BusinessException(ErrorCodes.SERVICE_BUSY,
+                    "Timed out waiting for predictor from pool [" + name + "]");
+        }
+
+        try {
+            Predictor<I, O> predictor = takeIdle();
+            if (predictor == null) {
+                predictor = model.newPredictor();
+                created.incrementAndGet();
+            }
+            active.incrementAndGet();
+            return new Lease<>(this, predictor);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Predictor<I, O> takeIdle() {
+        if (config.isThreadAffinity()) {
+            Predictor<I, O> preferred = lastUsed.get();
+            if (preferred != null && idle.remove(preferred)) {
+                return preferred;
+            }
+        }
+        // LIFO：优先复用最近归还的 Predictor，其 native 缓存更可能是热的
+        return idle.pollFirst();
+    }
+
+    private void release(Predictor<I, O> predictor) {
+        active.decrementAndGet();
+        if (closed) {
+            predictor.close();
+            created.decrementAndGet();
+        } else {
+            if (config.isThreadAffinity()) {
+                lastUsed.set(predictor);
+            }
+            idle.offerFirst(predictor);
+        }
+        permits.release();
+    }
+
+    public String getName() { return name; }
+    public int getActiveCount() { return active.get(); }
+    public int getCreatedCount() { return created.get(); }
+    public PredictorPoolConfig getConfig() { return config; }
+
+    @Override
+    public void close() {
+        closed = true;
+        Predictor<I, O> predictor;
+        while ((predictor = idle.pollFirst()) != null) {
+            predictor.close();
+            created.decrementAndGet();
+        }
+        meters.forEach(registry::remove);
+        log.info("Predictor pool [{}] closed, {} predictor(s) still in use", name, active.get());
+    }
+
+    /**
+     * 一次借用；close() 时把 Predictor 归还到池中
+     */
+    public static final class Lease<I, O> implements AutoCloseable {
+
+        private final PredictorPool<I, O> pool;
+        private Predictor<I, O> predictor;
+
+        private Lease(PredictorPool<I, O> pool, Predictor<I, O> predictor) {
+            this.pool = pool;
+            this.predictor = predictor;
+        }
+
+        public O predict(I input) throws TranslateException {
+            return get().predict(input);
+        }
+
+        public List<O> batchPredict(List<I> inputs) throws TranslateException {
+            return get().batchPredict(inputs);
+        }
+
+        public Predictor<I, O> get() {
+            if (predictor == null) {
+                throw new IllegalStateException("Predictor lease already returned.");
+            }
+            return predictor;
+        }
+
+        @Override
+        public void close() {
+            if (predictor != null) {
+                pool.release(predictor);
+                predictor = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.estech.model.core;
+
+/**
+ * Predictor 池配置
+ */
+public class PredictorPoolConfig {
+
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final boolean threadAffinity;
+
+    /**
+     * @param maxSize             池内最多同时存在的 Predictor 数量
+     * @param borrowTimeoutMillis 借用等待超时（毫秒），超时后快速失败
+     * @param threadAffinity      是否优先把同一线程上次使用的 Predictor 还给该线程
+     */
+    public PredictorPoolConfig(int maxSize, long borrowTimeoutMillis, boolean threadAffinity) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.threadAffinity = threadAffinity;
+    }
+
+    public static PredictorPoolConfig defaults() {
+        return new PredictorPoolConfig(Runtime.getRuntime().availableProcessors(), 5000, false);
+    }
+
+    public int getMaxSize() { return maxSize; }
+    public long getBorrowTimeoutMillis() { return borrowTimeoutMillis; }
+    public boolean isThreadAffinity() { return threadAffinity; }
+}
@@ -0,0 +1,299 @@
+package org.estech.model.core;
+
+import ai.djl.inference.Predictor;
+import ai.djl.modality.Classifications;
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.djl.repository.zoo.ZooModel;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.exception.BusinessException;
+import org.estech.model.config.ResNetModelConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 量化等模型变体与 fp32 原始模型的对比：在同一组本地图片上分别推理，统计 top-1 / top-K 一致率、
+ * 单张延迟与内存占用。
+ * <p>
+ * 两种用法：
+ * <ul>
+ *   <li>注册时校验：变体配置了 min-agreement 时，{@link ModelManager#register} 在模型对外可见前调用
+ *       {@link #gate(ModelDefinition)}，一致率低于阈值的变体拒绝注册；</li>
+ *   <li>离线评估：{@link #main(String[])} 输出完整报告，一致率低于阈值时以非 0 退出，便于放进发布流程。</li>
+ * </ul>
+ * 图片放在子目录中时以子目录名为标签，额外统计两种模型各自的 top-1 准确率（类名包含标签即视为命中）。
+ */
+@Slf4j
+public final class VariantEvaluator {
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp");
+
+    private VariantEvaluator() {}
+
+    /**
+     * 对比结果。准确率在图片无标签时为 NaN，内存在无法读取进程 RSS 时为 -1。
+     *
+     * @param top1Agreement 两个模型 top-1 类别相同的图片占比
+     * @param topKAgreement 两个模型 top-K 类别集合的平均重合度
+     */
+    public record Report(String reference, String candidate, int images, int topK,
+                         double top1Agreement, double topKAgreement,
+                         double referenceAccuracy, double candidateAccuracy,
+                         double referenceMeanMillis, double candidateMeanMillis,
+                         double referenceP95Millis, double candidateP95Millis,
+                         long referenceFileBytes, long candidateFileBytes,
+                         long referenceRssBytes, long candidateRssBytes) {
+
+        public String format() {
+            return String.format(Locale.ROOT, """
+                            %s vs %s on %d images
+                              top-1 agreement : %.4f
+                              top-%d agreement : %.4f
+                              top-1 accuracy  : %.4f -> %.4f
+                              latency mean ms : %.2f -> %.2f
+                              latency p95 ms  : %.2f -> %.2f
+                              model file MB   : %.1f -> %.1f
+                              loaded RSS MB   : %.1f -> %.1f""",
+                    reference, candidate, images, top1Agreement, topK, topKAgreement,
+                    referenceAccuracy, candidateAccuracy,
+                    referenceMeanMillis, candidateMeanMillis, referenceP95Millis, candidateP95Millis,
+                    megabytes(referenceFileBytes), megabytes(candidateFileBytes),
+                    megabytes(referenceRssBytes), megabytes(candidateRssBytes));
+        }
+
+        private static double megabytes(long bytes) {
+            return bytes < 0 ? Double.NaN : bytes / (1024.0 * 1024.0);
+        }
+    }
+
+    /**
+     * 加载时校验：变体为 fp32 或未配置 min-agreement 时直接通过，否则在 gate-images 上与 fp32 对比，
+     * top-1 一致率低于阈值时抛出 MODEL_ERROR。校验期间会临时加载一份 fp32 模型。
+     */
+    public static void gate(ModelDefinition candidate) throws Exception {
+        if (ModelDefinition.VARIANT_FP32.equals(candidate.getVariant()) || candidate.getMinAgreement() <= 0) {
+            return;
+        }
+        if (candidate.getGateImages() == null) {
+            throw new BusinessException(ErrorCodes.MODEL_ERROR, "Model " + candidate.getId()
+                    + " sets min-agreement but no gate-images to verify it against");
+        }
+        Report report;
+        try {
+            report = evaluate(candidate, Path.of(candidate.getGateImages()), 5);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCodes.MODEL_ERROR, "Model " + candidate.getId() + ": " + e.getMessage());
+        }
+        log.info("Variant gate for {}:\n{}", candidate.getId(), report.format());
+        if (report.top1Agreement() < candidate.getMinAgreement()) {
+            throw new BusinessException(ErrorCodes.MODEL_ERROR, String.format(Locale.ROOT,
+                    "Model %s refused: top-1 agreement with fp32 is %.4f, below min-agreement %.4f",
+                    candidate.getId(), report.top1Agreement(), candidate.getMinAgreement()));
+        }
+    }
+
+    /**
+     * 在 imageDir 下的图片上对比 candidate 与其 fp32 版本（两者都用单个 Predictor 逐张推理，先各自预热一张）
+     */
+    public static Report evaluate(ModelDefinition candidate, Path imageDir, int topK) throws Exception {
+        List<Path> images = listImages(imageDir);
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("No images found under " + imageDir);
+        }
+        ModelDefinition reference = candidate.withVariant(ModelDefinition.VARIANT_FP32);
+
+        long rssBefore = residentBytes();
+        try (ZooModel<Image, Classifications> referenceModel = load(reference)) {
+            long rssReference = residentBytes();
+            try (ZooModel<Image, Classifications> candidateModel = load(candidate)) {
+                long rssCandidate = residentBytes();
+
+                Run expected = run(referenceModel, images, topK);
+                Run actual = run(candidateModel, images, topK);
+
+                int top1Matches = 0;
+                double overlap = 0;
+                int labeled = 0;
+                int referenceHits = 0;
+                int candidateHits = 0;
+                for (int i = 0; i < images.size(); i++) {
+                    List<String> want = expected.classes.get(i);
+                    List<String> got = actual.classes.get(i);
+                    if (want.get(0).equals(got.get(0))) {
+                        top1Matches++;
+                    }
+                    Set<String> common = new HashSet<>(want);
+                    common.retainAll(got);
+                    overlap += (double) common.size() / want.size();
+
+                    String label = labelOf(imageDir, images.get(i));
+                    if (label != null) {
+                        labeled++;
+                        referenceHits += matches(want.get(0), label) ? 1 : 0;
+                        candidateHits += matches(got.get(0), label) ? 1 : 0;
+                    }
+                }
+
+                int n = images.size();
+                return new Report(reference.getId(), candidate.getId(), n, topK,
+                        (double) top1Matches / n, overlap / n,
+                        labeled > 0 ? (double) referenceHits / labeled : Double.NaN,
+                        labeled > 0 ? (double) candidateHits / labeled : Double.NaN,
+                        mean(expected.millis), mean(actual.millis),
+                        percentile(expected.millis, 0.95), percentile(actual.millis, 0.95),
+                        ResNetModelConfig.getModelSize(reference), ResNetModelConfig.getModelSize(candidate),
+                        delta(rssBefore, rssReference), delta(rssReference, rssCandidate));
+            }
+        }
+    }
+
+    /**
+     * 递归列出目录下的图片文件（按路径排序，结果可复现）
+     */
+    public static List<Path> listImages(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(f -> IMAGE_EXTENSIONS.contains(extension(f)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static ZooModel<Image, Classifications> load(ModelDefinition definition) throws Exception {
+        return ResNetModelConfig.loadModel(definition, ResNetModelConfig.resolveEngineOptions(definition, 1));
+    }
+
+    private static Run run(ZooModel<Image, Classifications> model, List<Path> images, int topK) throws Exception {
+        Run run = new Run(images.size());
+        try (Predictor<Image, Classifications> predictor = model.newPredictor()) {
+            predictor.predict(ImageFactory.getInstance().fromFile(images.get(0)));
+            for (int i = 0; i < images.size(); i++) {
+                Image image = ImageFactory.getInstance().fromFile(images.get(i));
+                long start = System.nanoTime();
+                Classifications result = predictor.predict(image);
+                run.millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+                run.classes.add(result.topK(topK).stream().map(Classifications.Classification::getClassName).toList());
+            }
+        }
+        return run;
+    }
+
+    private static final class Run {
+        final List<List<String>> classes;
+        final double[] millis;
+
+        Run(int size) {
+            classes = new ArrayList<>(size);
+            millis = new double[size];
+        }
+    }
+
+    /**
+     * 图片所在子目录名，直接放在 imageDir 下的图片没有标签
+     */
+    private static String labelOf(Path imageDir, Path image) {
+        Path parent = image.getParent();
+        if (parent == null || parent.equals(imageDir)) {
+            return null;
+        }
+        return parent.getFileName().toString();
+    }
+
+    private static boolean matches(String className, String label) {
+        return className.toLowerCase(Locale.ROOT).contains(label.toLowerCase(Locale.ROOT).replace('_', ' '));
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(Double.NaN);
+    }
+
+    private static double percentile(double[] values, double p) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static long delta(long before, long after) {
+        return before < 0 || after < 0 ? -1 : after - before;
+    }
+
+    /**
+     * 进程常驻内存（Linux /proc/self/status 的 VmRSS），其他平台返回 -1。
+     * 模型权重在 native 内存中，JVM 堆统计不到，所以用 RSS 的增量近似一个模型的实际占用。
+     */
+    private static long residentBytes() {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try (Stream<String> lines = Files.lines(status)) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> line.replaceAll("[^0-9]", ""))
+                    .mapToLong(kb -> Long.parseLong(kb) * 1024)
+                    .findFirst()
+                    .orElse(-1);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 离线评估：
+     * <pre>
+     * mvn -pl inference-model exec:java -Dexec.mainClass=org.estech.model.core.VariantEvaluator \
+     *     -Dexec.args="resnet18 int8 /data/imagenet-val-sample 5"
+     * </pre>
+     * 参数：模型名、变体名、图片目录、top-K（默认 5）。模型目录取 classpath 的 models.yaml，
+     * 可用 -Dmodel.catalog=/path/to/models.yaml 指定其他文件。
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: VariantEvaluator <model> <variant> <images-dir> [topK]");
+            System.exit(2);
+        }
+        int topK = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        ModelDefinition candidate = findModel(args[0]).withVariant(args[1]);
+        Report report = evaluate(candidate, Path.of(args[2]), topK);
+        System.out.println(report.format());
+        if (candidate.getMinAgreement() > 0 && report.top1Agreement() < candidate.getMinAgreement()) {
+            System.out.printf(Locale.ROOT, "FAILED: top-1 agreement below min-agreement %.4f%n", candidate.getMinAgreement());
+            System.exit(1);
+        }
+    }
+
+    private static ModelDefinition findModel(String name) throws IOException {
+        String catalogFile = System.getProperty("model.catalog");
+        try (InputStream input = catalogFile != null
+                ? Files.newInputStream(Path.of(catalogFile))
+                : VariantEvaluator.class.getClassLoader().getResourceAsStream(ModelManager.DEFAULT_CATALOG)) {
+            if (input == null) {
+                throw new IOException("Model catalog not found: " + ModelManager.DEFAULT_CATALOG);
+            }
+            return ModelDefinition.loadCatalog(input).models().stream()
+                    .filter(m -> m.getName().equals(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown model: " + name));
+        }
+    }
+}
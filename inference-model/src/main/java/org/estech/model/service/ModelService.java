@@ -5,12 +5,33 @@ import ai.djl.modality.cv.Image;
 import ai.djl.modality.cv.ImageFactory;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
+import org.estech.common.constants.ErrorCodes;
 import org.estech.common.dto.ClassificationResult;
-import org.estech.model.core.ImagePredictor;
+import org.estech.common.exception.BusinessException;
+import org.estech.model.config.ResNetModelConfig;
+import org.estech.model.core.ModelDefinition;
+import org.estech.model.core.ModelHandle;
+import org.estech.model.core.ModelManager;
+import org.estech.model.core.PredictorPool;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * 分类服务。带 model 参数的方法按名称选择注册表中的模型（null 为默认模型），其余方法使用默认模型。
+ * <p>
+ * 缓存 key 与推理需要使用同一个模型版本时，先 {@link #acquire(String)} 取得句柄，
+ * 再调用带 {@link ModelHandle} 参数的方法；句柄由调用方关闭。
+ */
 public class ModelService {
 
     private static final int DEFAULT_TOP_K = 5;
@@ -21,7 +42,7 @@ public class ModelService {
 
     public ClassificationResult classify(Path imagePath, int topK) throws Exception {
         Image image = ImageFactory.getInstance().fromFile(imagePath);
-        return predictInternal(image, topK);
+        return predictInternal(null, image, topK);
     }
 
     public ClassificationResult classify(InputStream stream) throws Exception {
@@ -29,22 +50,248 @@ public class ModelService {
     }
 
     public ClassificationResult classify(InputStream stream, int topK) throws Exception {
+        return classify(null, stream, topK);
+    }
+
+    public ClassificationResult classify(String model, InputStream stream, int topK) throws Exception {
         Image image = ImageFactory.getInstance().fromInputStream(stream);
-        return predictInternal(image, topK);
+        return predictInternal(model, image, topK);
+    }
+
+    /**
+     * 使用调用方持有的模型句柄分类
+     */
+    public ClassificationResult classify(ModelHandle handle, InputStream stream, int topK) throws Exception {
+        return await(classifyAsync(handle, stream, topK));
     }
 
     public ClassificationResult classifyNDArray(NDArray nd, int topK) throws Exception {
-        try (ImagePredictor predictor = new ImagePredictor()) {
-            // 直接调用模型预测，不走 Translator.processInput()
-            Classifications result = predictor.predict(new NDList(nd));
-            return ClassificationResultAssembler.from(result, topK);
+        return classifyNDArray(null, nd, topK);
+    }
+
+    /**
+     * nd 形状须为 [3, H, W]，H/W 与模型的 image-size 一致。
+     * 返回或抛出异常时批处理器已不再引用 nd，调用方随即释放 nd 的内存是安全的
+     */
+    public ClassificationResult classifyNDArray(String model, NDArray nd, int topK) throws Exception {
+        return awaitReleasing(classifyNDArrayAsync(model, nd, topK));
+    }
+
+    /**
+     * 使用调用方持有的模型句柄分类，nd 的约定同 {@link #classifyNDArray(String, NDArray, int)}
+     */
+    public ClassificationResult classifyNDArray(ModelHandle handle, NDArray nd, int topK) throws Exception {
+        return awaitReleasing(classifyNDArrayOwned(handle.share(), nd, topK));
+    }
+
+    public List<ClassificationResult> classifyNDArrayBatch(NDArray batch, int topK) throws Exception {
+        return classifyNDArrayBatch(null, batch, topK);
+    }
+
+    /**
+     * 批量分类：batch 形状为 [N, 3, H, W]，一次 batchPredict 得到 N 个结果（顺序与输入一致）
+     */
+    public List<ClassificationResult> classifyNDArrayBatch(String model, NDArray batch, int topK) throws Exception {
+        try (ModelHandle handle = ModelManager.acquire(model)) {
+            return classifyNDArrayBatch(handle, batch, topK);
+        }
+    }
+
+    /**
+     * 使用调用方持有的模型句柄批量分类
+     */
+    public List<ClassificationResult> classifyNDArrayBatch(ModelHandle handle, NDArray batch, int topK) throws Exception {
+        int n = Math.toIntExact(batch.getShape().get(0));
+        List<NDList> inputs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            inputs.add(new NDList(batch.get(i)));
+        }
+        try (PredictorPool.Lease<NDList, Classifications> predictor = handle.getNDListPool().borrow()) {
+            List<Classifications> results = predictor.batchPredict(inputs);
+            List<ClassificationResult> assembled = new ArrayList<>(results.size());
+            for (Classifications result : results) {
+                assembled.add(ClassificationResultAssembler.from(result, topK));
+            }
+            return assembled;
+        }
+    }
+
+    /**
+     * 异步分类：在调用线程解码图片，启用批处理时交给动态批处理器，不占用调用线程等待推理
+     */
+    public CompletableFuture<ClassificationResult> classifyAsync(InputStream stream, int topK) throws Exception {
+        return classifyAsync(null, stream, topK);
+    }
+
+    public CompletableFuture<ClassificationResult> classifyAsync(String model, InputStream stream, int topK) throws Exception {
+        Image image = ImageFactory.getInstance().fromInputStream(stream);
+        return classifyAsync(model, image, topK);
+    }
+
+    public CompletableFuture<ClassificationResult> classifyAsync(Image image, int topK) throws Exception {
+        return classifyAsync(null, image, topK);
+    }
+
+    public CompletableFuture<ClassificationResult> classifyAsync(String model, Image image, int topK) throws Exception {
+        return classifyOwned(ModelManager.acquire(model), image, topK);
+    }
+
+    /**
+     * 使用调用方持有的模型句柄异步分类；推理期间另持有一个引用，调用方在本方法返回后即可关闭句柄
+     */
+    public CompletableFuture<ClassificationResult> classifyAsync(ModelHandle handle, InputStream stream, int topK) throws Exception {
+        Image image = ImageFactory.getInstance().fromInputStream(stream);
+        return classifyOwned(handle.share(), image, topK);
+    }
+
+    /**
+     * handle 的一个引用交给本方法，推理完成后归还
+     */
+    private static CompletableFuture<ClassificationResult> classifyOwned(ModelHandle handle, Image image, int topK) throws Exception {
+        if (!handle.isBatchingEnabled()) {
+            try (handle; PredictorPool.Lease<Image, Classifications> predictor = handle.getImagePool().borrow()) {
+                return CompletableFuture.completedFuture(ClassificationResultAssembler.from(predictor.predict(image), topK));
+            }
+        }
+        return submit(handle, () -> handle.getImageBatcher().submit(image), topK);
+    }
+
+    public CompletableFuture<ClassificationResult> classifyNDArrayAsync(NDArray nd, int topK) throws Exception {
+        return classifyNDArrayAsync(null, nd, topK);
+    }
+
+    /**
+     * 注意：NDArray 的 NDManager 必须在 future 完成前保持打开
+     */
+    public CompletableFuture<ClassificationResult> classifyNDArrayAsync(String model, NDArray nd, int topK) throws Exception {
+        return classifyNDArrayOwned(ModelManager.acquire(model), nd, topK);
+    }
+
+    private static CompletableFuture<ClassificationResult> classifyNDArrayOwned(ModelHandle handle, NDArray nd, int topK) throws Exception {
+        if (!handle.isBatchingEnabled()) {
+            try (handle; PredictorPool.Lease<NDList, Classifications> predictor = handle.getNDListPool().borrow()) {
+                // 直接调用模型预测，不走 Translator.processInput()
+                return CompletableFuture.completedFuture(
+                        ClassificationResultAssembler.from(predictor.predict(new NDList(nd)), topK));
+            }
+        }
+        return submit(handle, () -> handle.getNDListBatcher().submit(new NDList(nd)), topK);
+    }
+
+    /**
+     * 取得模型句柄（null 为默认模型），用完 close() 归还；持有期间该版本的模型不会被释放
+     */
+    public ModelHandle acquire(String model) {
+        return ModelManager.acquire(model);
+    }
+
+    /**
+     * 选中模型的图片批处理队列已满，此时提交的图片会以 SERVICE_BUSY 失败；入口可据此在读取请求体之前拒绝
+     */
+    public boolean isSaturated(String model) {
+        try (ModelHandle handle = ModelManager.acquire(model)) {
+            return handle.isImageBatchSaturated();
+        }
+    }
+
+    /**
+     * 选中模型的定义（输入尺寸、版本等）
+     */
+    public ModelDefinition getDefinition(String model) {
+        return ModelManager.getDefinition(model);
+    }
+
+    /**
+     * 选中模型的类别标签，下标即模型输出的类别序号
+     */
+    public List<String> getSynset(String model) throws IOException {
+        return getSynset(getDefinition(model));
+    }
+
+    public List<String> getSynset(ModelDefinition definition) throws IOException {
+        return ResNetModelConfig.loadSynset(definition.getSynsetPath());
+    }
+
+    private ClassificationResult predictInternal(String model, Image image, int topK) throws Exception {
+        return await(classifyAsync(model, image, topK));
+    }
+
+    /**
+     * 提交到批处理器，推理完成后才归还模型引用，保证卸载/替换时不会释放在途请求的模型。
+     * 返回的 future 的 cancel 转给批处理任务：尚未开始推理的任务从队列移除，已开始的不受影响（返回 false）
+     */
+    private static CompletableFuture<ClassificationResult> submit(
+            ModelHandle handle, BatchSubmission submission, int topK) throws Exception {
+        CompletableFuture<Classifications> future;
+        try {
+            future = submission.submit();
+        } catch (Exception | Error e) {
+            handle.close();
+            throw e;
         }
+        CompletableFuture<ClassificationResult> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return future.cancel(mayInterruptIfRunning);
+            }
+        };
+        future.whenComplete((classifications, error) -> {
+            handle.close();
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            try {
+                result.complete(ClassificationResultAssembler.from(classifications, topK));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 等待推理结果，超过 {@link ModelManager#getAwaitTimeoutMillis()} 以 SERVICE_BUSY 失败，
+     * 同时取消仍在批处理队列中的任务；已开始推理的任务照常完成，模型引用由其完成时归还
+     */
+    private static ClassificationResult await(CompletableFuture<ClassificationResult> future) throws Exception {
+        return await(future, false);
     }
 
-    private ClassificationResult predictInternal(Image image, int topK) throws Exception {
-        try (ImagePredictor predictor = new ImagePredictor()) {
-            Classifications result = predictor.predict(image);
-            return ClassificationResultAssembler.from(result, topK);
+    /**
+     * 同 {@link #await(CompletableFuture)}，但超时时若任务已开始推理，等它结束后才抛出，
+     * 保证返回后批处理器不再使用调用方的输入（如 NDArray 背后的复用缓冲区）
+     */
+    private static ClassificationResult awaitReleasing(CompletableFuture<ClassificationResult> future) throws Exception {
+        return await(future, true);
+    }
+
+    private static ClassificationResult await(CompletableFuture<ClassificationResult> future,
+                                              boolean waitIfRunning) throws Exception {
+        long timeout = ModelManager.getAwaitTimeoutMillis();
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!future.cancel(false) && waitIfRunning) {
+                // 已在推理中，一次 batchPredict 的时间内结束；结果已无人使用，只等待输入不再被引用
+                try {
+                    future.join();
+                } catch (CancellationException | CompletionException ignored) {
+                    // 只关心任务结束
+                }
+            }
+            throw new BusinessException(ErrorCodes.SERVICE_BUSY, "Inference did not complete within " + timeout + " ms");
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof Exception ex) {
+                throw ex;
+            }
+            throw e;
         }
     }
+
+    @FunctionalInterface
+    private interface BatchSubmission {
+        CompletableFuture<Classifications> submit() throws Exception;
+    }
 }
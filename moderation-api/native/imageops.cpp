@@ -3,6 +3,16 @@
 #include <cmath>
 #include <cstring>
 #include <cstdio>
+#include <vector>
+#include <algorithm>
+#include <atomic>
+#include <condition_variable>
+#include <deque>
+#include <functional>
+#include <memory>
+#include <mutex>
+#include <shared_mutex>
+#include <thread>
 
 #define STB_IMAGE_IMPLEMENTATION
 #include "third_party/stb_image.h"
@@ -12,6 +22,53 @@
 
 #include "org_estech_api_jni_NativeImageOps.h"
 
+// 日志级别：0=关闭 1=ERROR 2=WARN 3=INFO 4=DEBUG
+// 默认只输出错误，可通过环境变量 IMAGEOPS_LOG_LEVEL 或 NativeImageOps.setLogLevel 调整
+enum LogLevel {
+    LOG_OFF = 0,
+    LOG_ERROR = 1,
+    LOG_WARN = 2,
+    LOG_INFO = 3,
+    LOG_DEBUG = 4
+};
+
+static volatile int g_log_level = LOG_ERROR;
+
+#define IMAGEOPS_LOG(level, ...)                      \
+    do {                                              \
+        if (g_log_level >= (level)) {                 \
+            fprintf(stderr, __VA_ARGS__);             \
+        }                                             \
+    } while (0)
+
+// ResNet 预处理：短边先缩放到 256，再中心裁剪
+static const int SHORT_SIDE_TARGET = 256;
+
+/**
+ * 短边缩放目标：输出尺寸超过 256（如 299）时放大到输出尺寸，保证裁剪窗口完整落在缩放后的图像内
+ */
+static int short_side_target(int outW, int outH) {
+    return std::max(SHORT_SIDE_TARGET, std::max(outW, outH));
+}
+
+// 返回码，与 NativeImageOps 中的常量保持一致
+enum PreprocessStatus {
+    PP_OK = 0,
+    PP_INVALID_ARGUMENT = -1,
+    PP_DECODE_FAILED = -2,
+    PP_ALLOC_FAILED = -3,
+    PP_OUTPUT_TOO_SMALL = -4,
+    PP_RESIZE_FAILED = -5
+};
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM*, void*) {
+    const char* level = std::getenv("IMAGEOPS_LOG_LEVEL");
+    if (level) {
+        g_log_level = std::atoi(level);
+    }
+    return JNI_VERSION_1_8;
+}
+
 static void center_crop_rgb_u8(const unsigned char* src, int rw, int rh,
                                unsigned char* dst, int outW, int outH) {
     int x0 = (rw - outW) / 2;
@@ -27,50 +84,37 @@ static void center_crop_rgb_u8(const unsigned char* src, int rw, int rh,
     }
 }
 
-JNIEXPORT jfloatArray JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessToCHWNative
-  (JNIEnv* env, jobject,
-   jobject encodedImage, jint outW, jint outH,
-   jfloat mean0, jfloat mean1, jfloat mean2,
-   jfloat std0,  jfloat std1,  jfloat std2)
+/**
+ * 参考实现：整图缩放到短边 256 -> 中心裁剪 -> 逐像素归一化。
+ * 保留用于基准测试与精度对比，线上路径使用 preprocess_chw_fused。
+ */
+static int preprocess_chw_reference(const unsigned char* in_ptr, int in_len,
+                                    int outW, int outH,
+                                    const float mean[3], const float stdv[3],
+                                    float* dst)
 {
-    fprintf(stderr, "[JNI DEBUG] preprocessToCHWNative called: outW=%d, outH=%d\n", outW, outH);
-
-    if (!encodedImage) {
-        fprintf(stderr, "[JNI ERROR] encodedImage is null\n");
-        return nullptr;
-    }
-
-    auto* in_ptr = (unsigned char*) env->GetDirectBufferAddress(encodedImage);
-    jlong in_len = env->GetDirectBufferCapacity(encodedImage);
-    if (!in_ptr || in_len <= 0) {
-        fprintf(stderr, "[JNI ERROR] Invalid buffer: ptr=%p, len=%ld\n", in_ptr, in_len);
-        return nullptr;
-    }
-
-    fprintf(stderr, "[JNI DEBUG] Buffer address=%p, length=%ld\n", in_ptr, in_len);
-
     // 加载图像
     int w, h, c;
-    unsigned char* hwc = stbi_load_from_memory(in_ptr, (int)in_len, &w, &h, &c, 3);
+    unsigned char* hwc = stbi_load_from_memory(in_ptr, in_len, &w, &h, &c, 3);
     if (!hwc) {
-        fprintf(stderr, "[JNI ERROR] stbi_load_from_memory failed\n");
-        return nullptr;
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] stbi_load_from_memory failed\n");
+        return PP_DECODE_FAILED;
     }
-    fprintf(stderr, "[JNI INFO] Loaded image %dx%d channels=%d\n", w, h, c);
+    IMAGEOPS_LOG(LOG_INFO, "[JNI INFO] Loaded image %dx%d channels=%d\n", w, h, c);
 
-    // Resize: 短边缩放到 256
-    const int short_target = 256;
-    double scale = (w < h) ? (double)short_target / w : (double)short_target / h;
-    int rw = (int)std::round(w * scale);
-    int rh = (int)std::round(h * scale);
+    // Resize: 短边缩放到 256（输出更大时缩放到输出尺寸）
+    int target = short_side_target(outW, outH);
+    double scale = (w < h) ? (double)target / w : (double)target / h;
+    int rw = std::max((int)std::round(w * scale), outW);
+    int rh = std::max((int)std::round(h * scale), outH);
 
-    fprintf(stderr, "[JNI INFO] Resizing to %dx%d (scale=%.4f)\n", rw, rh, scale);
+    IMAGEOPS_LOG(LOG_INFO, "[JNI INFO] Resizing to %dx%d (scale=%.4f)\n", rw, rh, scale);
 
     unsigned char* resized256 = (unsigned char*) std::malloc((size_t)rw * rh * 3);
     if (!resized256) {
-        fprintf(stderr, "[JNI ERROR] Failed to allocate resized buffer\n");
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Failed to allocate resized buffer\n");
         stbi_image_free(hwc);
-        return nullptr;
+        return PP_ALLOC_FAILED;
     }
 
     if (!stbir_resize_uint8_linear(
@@ -78,42 +122,26 @@ JNIEXPORT jfloatArray JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessT
             resized256, rw, rh, rw * 3,
             STBIR_RGB))
     {
-        fprintf(stderr, "[JNI ERROR] stbir_resize_uint8_linear failed\n");
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] stbir_resize_uint8_linear failed\n");
         std::free(resized256);
         stbi_image_free(hwc);
-        return nullptr;
+        return PP_RESIZE_FAILED;
     }
     stbi_image_free(hwc);
-    fprintf(stderr, "[JNI INFO] Resize completed\n");
 
     // Center crop
     unsigned char* cropped = (unsigned char*) std::malloc((size_t)outW * outH * 3);
     if (!cropped) {
-        fprintf(stderr, "[JNI ERROR] Failed to allocate crop buffer\n");
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Failed to allocate crop buffer\n");
         std::free(resized256);
-        return nullptr;
+        return PP_ALLOC_FAILED;
     }
 
     center_crop_rgb_u8(resized256, rw, rh, cropped, outW, outH);
     std::free(resized256);
-    fprintf(stderr, "[JNI INFO] Center crop to %dx%d completed\n", outW, outH);
 
     // 转换为 CHW 格式并归一化
-    size_t N = (size_t)outW * outH * 3;
-    float* chw = (float*) std::malloc(N * sizeof(float));
-    if (!chw) {
-        fprintf(stderr, "[JNI ERROR] Failed to allocate CHW buffer\n");
-        std::free(cropped);
-        return nullptr;
-    }
-
-    const float mean[3] = {mean0, mean1, mean2};
-    const float stdv[3] = {std0, std1, std2};
     int hw = outW * outH;
-
-    fprintf(stderr, "[JNI INFO] Converting to CHW with normalization (mean=[%.3f,%.3f,%.3f], std=[%.3f,%.3f,%.3f])\n",
-            mean0, mean1, mean2, std0, std1, std2);
-
     for (int y = 0; y < outH; ++y) {
         for (int x = 0; x < outW; ++x) {
             int i = (y * outW + x) * 3;
@@ -122,34 +150,362 @@ JNIEXPORT jfloatArray JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessT
             float b = (cropped[i + 2] / 255.0f - mean[2]) / (stdv[2] == 0 ? 1.0f : stdv[2]);
 
             int idx = y * outW + x;
-            chw[idx]          = r;  // R channel
-            chw[idx + hw]     = g;  // G channel
-            chw[idx + 2 * hw] = b;  // B channel
+            dst[idx]          = r;  // R channel
+            dst[idx + hw]     = g;  // G channel
+            dst[idx + 2 * hw] = b;  // B channel
         }
     }
     std::free(cropped);
+    return PP_OK;
+}
+
+/**
+ * 一维重采样权重（三角/线性滤波，缩小时按比例放宽支撑区间以抗锯齿）。
+ * 只为裁剪窗口内的输出坐标计算，输出坐标 o 对应缩放后图像的 offset + o。
+ */
+struct ResampleTaps {
+    std::vector<int> first;    // 每个输出坐标的第一个源像素
+    std::vector<int> count;    // 参与的源像素个数
+    std::vector<float> weight; // [out_n * max_taps]，已归一化
+    int max_taps = 0;
+};
+
+static void build_taps(int out_n, int offset, double scale, int src_n, ResampleTaps& taps) {
+    double inv = 1.0 / scale;
+    double support = scale >= 1.0 ? 1.0 : inv;
+    double filter_scale = scale >= 1.0 ? 1.0 : scale;
+
+    taps.max_taps = (int)std::ceil(2.0 * support) + 2;
+    taps.first.resize(out_n);
+    taps.count.resize(out_n);
+    taps.weight.assign((size_t)out_n * taps.max_taps, 0.0f);
+
+    for (int o = 0; o < out_n; ++o) {
+        // 像素中心对齐：缩放后坐标 (offset + o + 0.5) 映射回源坐标
+        double center = (offset + o + 0.5) * inv;
+        int lo = (int)std::floor(center - support);
+        int hi = (int)std::ceil(center + support);
+        // 钳制到源图范围内，并保证至少一个源像素（count >= 1），权重写入不会越界
+        int first = std::min(std::max(lo, 0), src_n - 1);
+        int last = std::max(std::min(hi - 1, src_n - 1), first);
+
+        float* w = &taps.weight[(size_t)o * taps.max_taps];
+        double sum = 0.0;
+        for (int i = lo; i < hi; ++i) {
+            double wt = 1.0 - std::fabs(center - (i + 0.5)) * filter_scale;
+            if (wt <= 0.0) continue;
+            int ci = std::min(std::max(i, first), last);  // 边缘像素复制
+            w[ci - first] += (float)wt;
+            sum += wt;
+        }
+        int count = last - first + 1;
+        if (sum <= 0.0) {
+            w[0] = 1.0f;
+            sum = 1.0;
+        }
+        for (int k = 0; k < count; ++k) {
+            w[k] = (float)(w[k] / sum);
+        }
+        taps.first[o] = first;
+        taps.count[o] = count;
+    }
+}
+
+/**
+ * 融合实现：只对 224x224 裁剪窗口重采样，直接输出归一化后的平面 float。
+ * 先纵向累加到一行 float 缓冲，再横向采样并用预计算的 scale/bias 归一化，
+ * 省掉整图缩放、裁剪拷贝和两遍逐像素扫描。内层循环是连续内存上的乘加，可被自动向量化。
+ */
+static int preprocess_chw_fused(const unsigned char* in_ptr, int in_len,
+                                int outW, int outH,
+                                const float mean[3], const float stdv[3],
+                                float* __restrict dst)
+{
+    int w, h, c;
+    unsigned char* hwc = stbi_load_from_memory(in_ptr, in_len, &w, &h, &c, 3);
+    if (!hwc) {
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] stbi_load_from_memory failed\n");
+        return PP_DECODE_FAILED;
+    }
+    IMAGEOPS_LOG(LOG_INFO, "[JNI INFO] Loaded image %dx%d channels=%d\n", w, h, c);
+
+    int target = short_side_target(outW, outH);
+    double scale = (w < h) ? (double)target / w : (double)target / h;
+    int rw = std::max((int)std::round(w * scale), outW);
+    int rh = std::max((int)std::round(h * scale), outH);
+    int x0 = std::max((rw - outW) / 2, 0);
+    int y0 = std::max((rh - outH) / 2, 0);
+
+    // (v / 255 - mean) / std  ==  v * scale + bias
+    float norm_scale[3];
+    float norm_bias[3];
+    for (int ch = 0; ch < 3; ++ch) {
+        float s = stdv[ch] == 0 ? 1.0f : stdv[ch];
+        norm_scale[ch] = 1.0f / (255.0f * s);
+        norm_bias[ch] = -mean[ch] / s;
+    }
+
+    thread_local ResampleTaps tx;
+    thread_local ResampleTaps ty;
+    thread_local std::vector<float> row;
+
+    build_taps(outW, x0, scale, w, tx);
+    build_taps(outH, y0, scale, h, ty);
+
+    // 裁剪窗口实际需要的源像素列范围
+    int col_min = tx.first[0];
+    int col_max = tx.first[outW - 1] + tx.count[outW - 1] - 1;
+    int span = (col_max - col_min + 1) * 3;
+    row.resize(span);
+
+    int hw = outW * outH;
+    float* __restrict out_r = dst;
+    float* __restrict out_g = dst + hw;
+    float* __restrict out_b = dst + 2 * hw;
+
+    for (int y = 0; y < outH; ++y) {
+        // 纵向：把参与的源行按权重累加到 row
+        float* __restrict acc = row.data();
+        std::fill(acc, acc + span, 0.0f);
+        const float* wy = &ty.weight[(size_t)y * ty.max_taps];
+        for (int k = 0; k < ty.count[y]; ++k) {
+            const unsigned char* __restrict src = hwc + ((size_t)(ty.first[y] + k) * w + col_min) * 3;
+            float wk = wy[k];
+            for (int j = 0; j < span; ++j) {
+                acc[j] += wk * (float)src[j];
+            }
+        }
+
+        // 横向：采样 + 归一化，直接写入 CHW
+        size_t base = (size_t)y * outW;
+        for (int x = 0; x < outW; ++x) {
+            const float* wx = &tx.weight[(size_t)x * tx.max_taps];
+            const float* p = acc + (tx.first[x] - col_min) * 3;
+            float r = 0.0f, g = 0.0f, b = 0.0f;
+            for (int k = 0; k < tx.count[x]; ++k) {
+                r += wx[k] * p[k * 3];
+                g += wx[k] * p[k * 3 + 1];
+                b += wx[k] * p[k * 3 + 2];
+            }
+            out_r[base + x] = r * norm_scale[0] + norm_bias[0];
+            out_g[base + x] = g * norm_scale[1] + norm_bias[1];
+            out_b[base + x] = b * norm_scale[2] + norm_bias[2];
+        }
+    }
+    stbi_image_free(hwc);
+
+    if (g_log_level >= LOG_DEBUG) {
+        fprintf(stderr, "[JNI DEBUG] First 10 values (R channel): ");
+        for (int i = 0; i < 10 && i < hw; ++i) {
+            fprintf(stderr, "%.4f ", dst[i]);
+        }
+        fprintf(stderr, "\n");
+    }
+    return PP_OK;
+}
+
+/**
+ * 批量预处理使用的常驻线程池。调用线程也参与计算，因此宽度为 0 时退化为串行。
+ * 工作线程只做纯 C++ 计算，不调用任何 JNI 函数。
+ * parallel_for 持有共享锁、resize 持有独占锁，调整宽度时等待进行中的批次完成。
+ */
+class WorkerPool {
+public:
+    explicit WorkerPool(int threads) { start(threads); }
+
+    ~WorkerPool() { stop(); }
+
+    void resize(int threads) {
+        std::unique_lock<std::shared_mutex> resize_lock(resize_mutex_);
+        stop();
+        start(threads);
+    }
+
+    int size() {
+        std::shared_lock<std::shared_mutex> resize_lock(resize_mutex_);
+        return (int) workers_.size();
+    }
+
+    // 并行执行 fn(0..n-1)，全部完成后返回
+    void parallel_for(int n, const std::function<void(int)>& fn) {
+        std::shared_lock<std::shared_mutex> resize_lock(resize_mutex_);
+        auto job = std::make_shared<Job>();
+        job->n = n;
+        job->fn = &fn;
+
+        // 没有工作线程时不入队：队列只由工作线程出队，入队的任务会一直留在队列中
+        if (workers_.empty()) {
+            run(*job);
+            return;
+        }
+        {
+            std::lock_guard<std::mutex> lock(mutex_);
+            jobs_.push_back(job);
+        }
+        cv_.notify_all();
+
+        run(*job);
+
+        {
+            std::unique_lock<std::mutex> lock(job->done_mutex);
+            job->done_cv.wait(lock, [&] { return job->done.load() == job->n; });
+        }
+        // 工作线程可能还没来得及出队，由调用方移除自己的任务
+        std::lock_guard<std::mutex> lock(mutex_);
+        auto it = std::find(jobs_.begin(), jobs_.end(), job);
+        if (it != jobs_.end()) {
+            jobs_.erase(it);
+        }
+    }
+
+private:
+    struct Job {
+        int n = 0;
+        const std::function<void(int)>* fn = nullptr;
+        std::atomic<int> next{0};
+        std::atomic<int> done{0};
+        std::mutex done_mutex;
+        std::condition_variable done_cv;
+    };
+
+    static void run(Job& job) {
+        int i;
+        while ((i = job.next.fetch_add(1)) < job.n) {
+            (*job.fn)(i);
+            if (job.done.fetch_add(1) + 1 == job.n) {
+                std::lock_guard<std::mutex> lock(job.done_mutex);
+                job.done_cv.notify_all();
+            }
+        }
+    }
+
+    void start(int threads) {
+        stopping_ = false;
+        for (int t = 0; t < threads; ++t) {
+            workers_.emplace_back([this] { loop(); });
+        }
+    }
+
+    void stop() {
+        {
+            std::lock_guard<std::mutex> lock(mutex_);
+            stopping_ = true;
+        }
+        cv_.notify_all();
+        for (auto& worker : workers_) {
+            worker.join();
+        }
+        workers_.clear();
+    }
+
+    void loop() {
+        for (;;) {
+            std::shared_ptr<Job> job;
+            {
+                std::unique_lock<std::mutex> lock(mutex_);
+                cv_.wait(lock, [&] { return stopping_ || !jobs_.empty(); });
+                if (stopping_) return;
+                job = jobs_.front();
+                // 已被领完的任务出队，未领完的留给其他线程继续领取
+                if (job->next.load() >= job->n) {
+                    jobs_.pop_front();
+                    continue;
+                }
+            }
+            run(*job);
+        }
+    }
+
+    std::vector<std::thread> workers_;
+    std::deque<std::shared_ptr<Job>> jobs_;
+    std::mutex mutex_;
+    std::shared_mutex resize_mutex_;
+    std::condition_variable cv_;
+    bool stopping_ = false;
+};
+
+static WorkerPool& worker_pool() {
+    // 默认宽度 = CPU 核数 - 1（调用线程本身也参与计算）
+    static WorkerPool pool((int) std::max(1u, std::thread::hardware_concurrency()) - 1);
+    return pool;
+}
+
+typedef int (*PreprocessFn)(const unsigned char*, int, int, int, const float*, const float*, float*);
+
+/**
+ * 校验 JNI 参数后调用指定实现，结果写入 output
+ */
+static jint preprocess_into(JNIEnv* env, PreprocessFn fn,
+                            jobject encodedImage, jint encodedLength, jobject output,
+                            jint outW, jint outH,
+                            const float mean[3], const float stdv[3])
+{
+    if (!encodedImage || !output || outW <= 0 || outH <= 0) {
+        return PP_INVALID_ARGUMENT;
+    }
+
+    auto* in_ptr = (unsigned char*) env->GetDirectBufferAddress(encodedImage);
+    jlong in_cap = env->GetDirectBufferCapacity(encodedImage);
+    if (!in_ptr || encodedLength <= 0 || encodedLength > in_cap) {
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Invalid input buffer: ptr=%p, len=%d, capacity=%ld\n",
+                     in_ptr, encodedLength, (long) in_cap);
+        return PP_INVALID_ARGUMENT;
+    }
+
+    // output 是 ByteBuffer，容量按字节计
+    auto* out_ptr = (float*) env->GetDirectBufferAddress(output);
+    jlong out_cap = env->GetDirectBufferCapacity(output);
+    size_t needed = (size_t)outW * outH * 3 * sizeof(float);
+    if (!out_ptr) {
+        return PP_INVALID_ARGUMENT;
+    }
+    if ((size_t)out_cap < needed) {
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Output buffer too small: capacity=%ld, needed=%zu\n",
+                     (long) out_cap, needed);
+        return PP_OUTPUT_TOO_SMALL;
+    }
 
-    // 调试输出：打印前 10 个值
-    fprintf(stderr, "[JNI DEBUG] First 10 values (R channel): ");
-    for (int i = 0; i < 10 && i < hw; ++i) {
-        fprintf(stderr, "%.4f ", chw[i]);
+    return fn(in_ptr, encodedLength, outW, outH, mean, stdv, out_ptr);
+}
+
+JNIEXPORT jfloatArray JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessToCHWNative
+  (JNIEnv* env, jobject,
+   jobject encodedImage, jint outW, jint outH,
+   jfloat mean0, jfloat mean1, jfloat mean2,
+   jfloat std0,  jfloat std1,  jfloat std2)
+{
+    IMAGEOPS_LOG(LOG_DEBUG, "[JNI DEBUG] preprocessToCHWNative called: outW=%d, outH=%d\n", outW, outH);
+
+    if (!encodedImage) {
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] encodedImage is null\n");
+        return nullptr;
+    }
+
+    auto* in_ptr = (unsigned char*) env->GetDirectBufferAddress(encodedImage);
+    jlong in_len = env->GetDirectBufferCapacity(encodedImage);
+    if (!in_ptr || in_len <= 0) {
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Invalid buffer: ptr=%p, len=%ld\n", in_ptr, (long) in_len);
+        return nullptr;
     }
-    fprintf(stderr, "\n");
 
-    // 验证数据有效性
-    bool has_nan = false;
-    bool has_inf = false;
-    for (size_t i = 0; i < N; ++i) {
-        if (std::isnan(chw[i])) has_nan = true;
-        if (std::isinf(chw[i])) has_inf = true;
+    size_t N = (size_t)outW * outH * 3;
+    float* chw = (float*) std::malloc(N * sizeof(float));
+    if (!chw) {
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Failed to allocate CHW buffer\n");
+        return nullptr;
+    }
+
+    const float mean[3] = {mean0, mean1, mean2};
+    const float stdv[3] = {std0, std1, std2};
+    if (preprocess_chw_fused(in_ptr, (int)in_len, outW, outH, mean, stdv, chw) != PP_OK) {
+        std::free(chw);
+        return nullptr;
     }
-    if (has_nan) fprintf(stderr, "[JNI WARNING] Data contains NaN!\n");
-    if (has_inf) fprintf(stderr, "[JNI WARNING] Data contains Inf!\n");
 
     // 创建 Java float 数组
     jfloatArray result = env->NewFloatArray((jsize)N);
     if (result == nullptr) {
-        fprintf(stderr, "[JNI ERROR] Failed to create Java float array\n");
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Failed to create Java float array\n");
         std::free(chw);
         return nullptr;
     }
@@ -159,7 +515,7 @@ JNIEXPORT jfloatArray JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessT
 
     // 检查 JNI 异常
     if (env->ExceptionCheck()) {
-        fprintf(stderr, "[JNI ERROR] Exception occurred while setting float array\n");
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Exception occurred while setting float array\n");
         env->ExceptionDescribe();
         std::free(chw);
         return nullptr;
@@ -167,7 +523,103 @@ JNIEXPORT jfloatArray JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessT
 
     // 释放 C++ 内存
     std::free(chw);
-
-    fprintf(stderr, "[JNI INFO] Successfully returned float array of size %zu\n", N);
     return result;
-}
\ No newline at end of file
+}
+
+JNIEXPORT jint JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessToCHWInto
+  (JNIEnv* env, jobject,
+   jobject encodedImage, jint encodedLength, jobject output,
+   jint outW, jint outH,
+   jfloat mean0, jfloat mean1, jfloat mean2,
+   jfloat std0,  jfloat std1,  jfloat std2)
+{
+    const float mean[3] = {mean0, mean1, mean2};
+    const float stdv[3] = {std0, std1, std2};
+    return preprocess_into(env, preprocess_chw_fused, encodedImage, encodedLength, output,
+                           outW, outH, mean, stdv);
+}
+
+JNIEXPORT jint JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessToCHWReferenceInto
+  (JNIEnv* env, jobject,
+   jobject encodedImage, jint encodedLength, jobject output,
+   jint outW, jint outH,
+   jfloat mean0, jfloat mean1, jfloat mean2,
+   jfloat std0,  jfloat std1,  jfloat std2)
+{
+    const float mean[3] = {mean0, mean1, mean2};
+    const float stdv[3] = {std0, std1, std2};
+    return preprocess_into(env, preprocess_chw_reference, encodedImage, encodedLength, output,
+                           outW, outH, mean, stdv);
+}
+
+JNIEXPORT jint JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessBatchInto
+  (JNIEnv* env, jobject,
+   jobjectArray encodedImages, jintArray encodedLengths, jobject output, jintArray statuses,
+   jint outW, jint outH,
+   jfloat mean0, jfloat mean1, jfloat mean2,
+   jfloat std0,  jfloat std1,  jfloat std2)
+{
+    if (!encodedImages || !encodedLengths || !output || !statuses || outW <= 0 || outH <= 0) {
+        return PP_INVALID_ARGUMENT;
+    }
+    jsize n = env->GetArrayLength(encodedImages);
+    if (env->GetArrayLength(encodedLengths) < n || env->GetArrayLength(statuses) < n) {
+        return PP_INVALID_ARGUMENT;
+    }
+
+    auto* out_ptr = (float*) env->GetDirectBufferAddress(output);
+    jlong out_cap = env->GetDirectBufferCapacity(output);
+    size_t per_image = (size_t)outW * outH * 3;
+    if (!out_ptr) {
+        return PP_INVALID_ARGUMENT;
+    }
+    if ((size_t)out_cap < per_image * n * sizeof(float)) {
+        IMAGEOPS_LOG(LOG_ERROR, "[JNI ERROR] Batch output buffer too small: capacity=%ld, images=%d\n",
+                     (long) out_cap, n);
+        return PP_OUTPUT_TOO_SMALL;
+    }
+
+    // 在调用线程上解析全部 JNI 引用，工作线程只接触裸指针
+    std::vector<const unsigned char*> inputs(n);
+    std::vector<jint> lengths(n);
+    std::vector<jint> results(n, PP_OK);
+    env->GetIntArrayRegion(encodedLengths, 0, n, lengths.data());
+    for (jsize i = 0; i < n; ++i) {
+        jobject buffer = env->GetObjectArrayElement(encodedImages, i);
+        inputs[i] = buffer ? (const unsigned char*) env->GetDirectBufferAddress(buffer) : nullptr;
+        jlong cap = buffer ? env->GetDirectBufferCapacity(buffer) : 0;
+        if (!inputs[i] || lengths[i] <= 0 || lengths[i] > cap) {
+            results[i] = PP_INVALID_ARGUMENT;
+        }
+        if (buffer) env->DeleteLocalRef(buffer);
+    }
+
+    const float mean[3] = {mean0, mean1, mean2};
+    const float stdv[3] = {std0, std1, std2};
+
+    std::function<void(int)> task = [&](int i) {
+        if (results[i] != PP_OK) return;
+        results[i] = preprocess_chw_fused(inputs[i], lengths[i], outW, outH, mean, stdv,
+                                          out_ptr + per_image * i);
+    };
+    worker_pool().parallel_for(n, task);
+
+    env->SetIntArrayRegion(statuses, 0, n, results.data());
+    int failed = 0;
+    for (jint r : results) {
+        if (r != PP_OK) ++failed;
+    }
+    return failed;
+}
+
+JNIEXPORT void JNICALL Java_org_estech_api_jni_NativeImageOps_setThreadPoolSize
+  (JNIEnv*, jclass, jint threads)
+{
+    worker_pool().resize(std::max(0, (int) threads));
+}
+
+JNIEXPORT void JNICALL Java_org_estech_api_jni_NativeImageOps_setLogLevel
+  (JNIEnv*, jclass, jint level)
+{
+    g_log_level = level;
+}
@@ -15,6 +15,46 @@ extern "C" {
 JNIEXPORT jfloatArray JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessToCHWNative
   (JNIEnv *, jobject, jobject, jint, jint, jfloat, jfloat, jfloat, jfloat, jfloat, jfloat);
 
+/*
+ * Class:     org_estech_api_jni_NativeImageOps
+ * Method:    preprocessToCHWInto
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;IIFFFFFF)I
+ */
+JNIEXPORT jint JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessToCHWInto
+  (JNIEnv *, jobject, jobject, jint, jobject, jint, jint, jfloat, jfloat, jfloat, jfloat, jfloat, jfloat);
+
+/*
+ * Class:     org_estech_api_jni_NativeImageOps
+ * Method:    preprocessToCHWReferenceInto
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;IIFFFFFF)I
+ */
+JNIEXPORT jint JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessToCHWReferenceInto
+  (JNIEnv *, jobject, jobject, jint, jobject, jint, jint, jfloat, jfloat, jfloat, jfloat, jfloat, jfloat);
+
+/*
+ * Class:     org_estech_api_jni_NativeImageOps
+ * Method:    preprocessBatchInto
+ * Signature: ([Ljava/nio/ByteBuffer;[ILjava/nio/ByteBuffer;[IIIFFFFFF)I
+ */
+JNIEXPORT jint JNICALL Java_org_estech_api_jni_NativeImageOps_preprocessBatchInto
+  (JNIEnv *, jobject, jobjectArray, jintArray, jobject, jintArray, jint, jint, jfloat, jfloat, jfloat, jfloat, jfloat, jfloat);
+
+/*
+ * Class:     org_estech_api_jni_NativeImageOps
+ * Method:    setThreadPoolSize
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_org_estech_api_jni_NativeImageOps_setThreadPoolSize
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     org_estech_api_jni_NativeImageOps
+ * Method:    setLogLevel
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_org_estech_api_jni_NativeImageOps_setLogLevel
+  (JNIEnv *, jclass, jint);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,92 @@
+package org.estech.api.jni;
+
+import org.estech.common.constants.ModelConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Native 预处理基准：参考实现（整图缩放 + 裁剪 + 逐像素归一化） vs 融合内核，
+ * 以及旧的 float[] 返回接口。
+ * <p>
+ * mvn -Pbench -pl moderation-api test-compile exec:exec -Djmh.include=NativePreprocess
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NativePreprocessBenchmark {
+
+    @Param({"640x480", "1920x1080", "4000x3000"})
+    public String resolution;
+
+    private final NativeImageOps ops = new NativeImageOps();
+    private final int size = ModelConstants.IMAGE_SIZE;
+
+    private ByteBuffer encoded;
+    private int encodedLength;
+    private ByteBuffer output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String[] wh = resolution.split("x");
+        byte[] jpeg = syntheticJpeg(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]));
+        encoded = ByteBuffer.allocateDirect(jpeg.length);
+        encoded.put(jpeg).flip();
+        encodedLength = jpeg.length;
+        output = ByteBuffer.allocateDirect(3 * size * size * Float.BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    @Benchmark
+    public ByteBuffer reference() {
+        ops.preprocessImageNetCHWReferenceInto(encoded, encodedLength, output, size);
+        return output;
+    }
+
+    @Benchmark
+    public ByteBuffer fused() {
+        ops.preprocessImageNetCHWInto(encoded, encodedLength, output, size);
+        return output;
+    }
+
+    @Benchmark
+    public float[] fusedFloatArray() {
+        return ops.preprocessImageNetCHW(encoded, size);
+    }
+
+    /**
+     * 带渐变和纹理的合成图片，避免纯色图让缩放变得不真实地便宜
+     */
+    private static byte[] syntheticJpeg(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = y * 255 / height;
+                int b = (int) (128 + 60 * Math.sin(x / 7.0) * Math.cos(y / 5.0));
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
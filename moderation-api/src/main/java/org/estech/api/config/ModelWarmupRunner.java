@@ -0,0 +1,37 @@
+package org.estech.api.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.estech.model.core.ModelWarmup;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动时同步加载并预热模型。
+ * <p>
+ * ApplicationRunner 全部执行完之后 Spring 才发布 ApplicationReadyEvent，readiness 才会变为 ACCEPTING_TRAFFIC，
+ * 因此预热期间 /actuator/health/readiness 保持 OUT_OF_SERVICE；预热失败则启动失败。
+ */
+@Slf4j
+@Component
+public class ModelWarmupRunner implements ApplicationRunner {
+
+    @Value("${model.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${model.warmup.iterations:3}")
+    private int iterations;
+
+    @Value("${model.warmup.batch-sizes:1,8}")
+    private int[] batchSizes;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!enabled) {
+            log.info("Model warm-up disabled, models will load on first request");
+            return;
+        }
+        ModelWarmup.run(iterations, batchSizes);
+    }
+}
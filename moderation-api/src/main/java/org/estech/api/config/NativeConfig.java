@@ -0,0 +1,30 @@
+package org.estech.api.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.api.jni.NativeImageOps;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class NativeConfig {
+
+    @Value("${native.preprocess.threads:-1}")
+    private int threads;
+
+    /**
+     * 配置 Native 批量预处理线程池宽度，-1 保持默认（CPU 核数 - 1）
+     */
+    @PostConstruct
+    public void configureNativePool() {
+        if (threads < 0) {
+            return;
+        }
+        if (NativeImageOps.configureThreadPool(threads)) {
+            log.info("Native preprocess thread pool size set to {}", threads);
+        } else {
+            log.warn("Native library has no preprocess thread pool, ignoring native.preprocess.threads={}", threads);
+        }
+    }
+}
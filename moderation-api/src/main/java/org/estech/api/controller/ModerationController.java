@@ -9,6 +9,7 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 @Slf4j
@@ -26,21 +27,32 @@ public class ModerationController {
     @Operation(summary = "Synchorizing: Upload Image")
     @PostMapping(value = "/classify", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ClassificationResult classify(@RequestPart("file") MultipartFile file,
+                                         @RequestParam(required = false) String model,
                                          @RequestParam(defaultValue = "5") int topK) throws Exception {
-        return service.classify(file, topK);
+        return service.classify(file, model, topK);
     }
 
     @Operation(summary = "Asynchronizing: Upload Image")
     @PostMapping(value = "/classify-async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public CompletableFuture<ClassificationResult> classifyAsync(@RequestPart("file") MultipartFile file,
+                                                             @RequestParam(required = false) String model,
                                                              @RequestParam(defaultValue = "5") int topK) throws Exception {
-        return service.classifyAsync(file, topK);
+        return service.classifyAsync(file, model, topK);
     }
 
     @PostMapping("/native")
     public ClassificationResult classifyNative(@RequestParam("file") MultipartFile file,
+                                           @RequestParam(required = false) String model,
                                            @RequestParam(defaultValue = "5") int topK) throws Exception {
-        return service.classifyNative(file, topK);
+        return service.classifyNative(file, model, topK);
+    }
+
+    @Operation(summary = "Native batch: Upload Images")
+    @PostMapping(value = "/native/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public List<ClassificationResult> classifyNativeBatch(@RequestPart("files") List<MultipartFile> files,
+                                                          @RequestParam(required = false) String model,
+                                                          @RequestParam(defaultValue = "5") int topK) throws Exception {
+        return service.classifyNativeBatch(files, model, topK);
     }
 
 }
@@ -0,0 +1,59 @@
+package org.estech.api.jni;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 每个工作线程一份的 DirectByteBuffer 缓存，供 Native 预处理复用，避免每次请求重新分配。
+ * <p>
+ * 输出缓冲区会被 DJL 直接包装成 NDArray（不拷贝），因此在同一线程处理下一张图片之前，
+ * 上一次得到的 NDArray 必须已经使用完毕。
+ */
+public final class NativeBufferArena {
+
+    /** 超过该大小的输入不缓存，避免少量大图长期占用 direct memory */
+    private static final int MAX_RETAINED_INPUT_BYTES = 2 * 1024 * 1024;
+
+    /** 超过该大小的输出（大批量）不缓存，约为 4 张 224x224 图片 */
+    private static final int MAX_RETAINED_OUTPUT_BYTES = 4 * 3 * 224 * 224 * Float.BYTES;
+
+    private static final ThreadLocal<NativeBufferArena> ARENA = ThreadLocal.withInitial(NativeBufferArena::new);
+
+    private ByteBuffer input;
+    private ByteBuffer output;
+
+    private NativeBufferArena() {}
+
+    public static NativeBufferArena current() {
+        return ARENA.get();
+    }
+
+    /**
+     * 获取至少 capacity 字节的输入缓冲区（position=0, limit=capacity）
+     */
+    public ByteBuffer input(int capacity) {
+        if (capacity > MAX_RETAINED_INPUT_BYTES) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        if (input == null || input.capacity() < capacity) {
+            input = ByteBuffer.allocateDirect(Math.min(MAX_RETAINED_INPUT_BYTES, Integer.highestOneBit(capacity) << 1));
+        }
+        input.clear().limit(capacity);
+        return input;
+    }
+
+    /**
+     * 获取可容纳 floatCount 个 float 的输出缓冲区，字节序为本机字节序
+     */
+    public ByteBuffer output(int floatCount) {
+        int bytes = Math.multiplyExact(floatCount, Float.BYTES);
+        if (bytes > MAX_RETAINED_OUTPUT_BYTES) {
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+        if (output == null || output.capacity() < bytes) {
+            output = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+        output.clear().limit(bytes);
+        return output;
+    }
+}
@@ -1,19 +1,76 @@
 package org.estech.api.jni;
 
 
+import lombok.extern.slf4j.Slf4j;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.exception.BusinessException;
+
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
+@Slf4j
 public class NativeImageOps {
 
+    // preprocessToCHWInto 返回码，与 imageops.cpp 保持一致
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_INVALID_ARGUMENT = -1;
+    public static final int STATUS_DECODE_FAILED = -2;
+    public static final int STATUS_ALLOC_FAILED = -3;
+    public static final int STATUS_OUTPUT_TOO_SMALL = -4;
+    public static final int STATUS_RESIZE_FAILED = -5;
+
+    // Native 日志级别：0=关闭 1=ERROR 2=WARN 3=INFO 4=DEBUG
+    public static final int LOG_OFF = 0;
+    public static final int LOG_ERROR = 1;
+    public static final int LOG_WARN = 2;
+    public static final int LOG_INFO = 3;
+    public static final int LOG_DEBUG = 4;
+
+    /**
+     * 打包的库不一定包含全部入口（例如未重新编译的旧版 dylib），
+     * 加载后逐个探测，缺失的入口不调用或退回到旧实现，而不是在请求中抛出 UnsatisfiedLinkError
+     */
+    private static final boolean INTO_SUPPORTED;
+    private static final boolean REFERENCE_SUPPORTED;
+    private static final boolean BATCH_SUPPORTED;
+
     static {
         try {
             NativeLibraryLoader.load("imageops");
         } catch (Exception e) {
             throw new RuntimeException("Failed to load native library", e);
         }
+        NativeImageOps probe = new NativeImageOps();
+        // 参数为 null 时 Native 侧直接返回 STATUS_INVALID_ARGUMENT，不做任何处理
+        INTO_SUPPORTED = isLinked(() -> probe.preprocessToCHWInto(null, 0, null, 0, 0, 0, 0, 0, 1, 1, 1));
+        REFERENCE_SUPPORTED = isLinked(() -> probe.preprocessToCHWReferenceInto(null, 0, null, 0, 0, 0, 0, 0, 1, 1, 1));
+        BATCH_SUPPORTED = isLinked(() -> probe.preprocessBatchInto(null, null, null, null, 0, 0, 0, 0, 0, 1, 1, 1));
+
+        Integer logLevel = Integer.getInteger("imageops.log.level");
+        if (logLevel != null && !isLinked(() -> setLogLevel(logLevel))) {
+            log.warn("Native library does not support setLogLevel, ignoring imageops.log.level={}", logLevel);
+        }
     }
 
+    /** 旧版库短边固定缩放到 256，更大的输出尺寸会越界读取 */
+    private static final int LEGACY_MAX_SIZE = 256;
+
+    private static boolean isLinked(Runnable call) {
+        try {
+            call.run();
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            log.warn("Native library is missing an entry point: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 设置 Native 侧 stderr 日志级别，默认只输出 ERROR
+     */
+    public static native void setLogLevel(int level);
+
     /**
      * 预处理图像为 CHW 格式 (C, H, W)
      *
@@ -35,6 +92,171 @@ public class NativeImageOps {
             float std0, float std1, float std2
     );
 
+    /**
+     * 预处理图像为 CHW 格式，直接写入调用方提供的 DirectByteBuffer，不产生 Java 堆分配
+     *
+     * @param encodedImage  编码的图像数据 (JPEG/PNG) 的 DirectByteBuffer，数据从下标 0 开始
+     * @param encodedLength 编码数据的有效字节数
+     * @param output        本机字节序的 DirectByteBuffer，容量至少 3 * outH * outW * 4 字节
+     * @return 状态码，{@link #STATUS_OK} 表示成功
+     */
+    public native int preprocessToCHWInto(
+            ByteBuffer encodedImage, int encodedLength,
+            ByteBuffer output,
+            int outW, int outH,
+            float mean0, float mean1, float mean2,
+            float std0, float std1, float std2
+    );
+
+    /**
+     * 参考实现（整图缩放到短边 256 -> 中心裁剪 -> 归一化），参数与 {@link #preprocessToCHWInto} 相同。
+     * 仅用于基准测试和与融合内核的精度对比。
+     */
+    public native int preprocessToCHWReferenceInto(
+            ByteBuffer encodedImage, int encodedLength,
+            ByteBuffer output,
+            int outW, int outH,
+            float mean0, float mean1, float mean2,
+            float std0, float std1, float std2
+    );
+
+    /**
+     * 便捷方法：使用 ImageNet 标准归一化参数，结果写入 output
+     */
+    public void preprocessImageNetCHWInto(ByteBuffer encodedImage, int encodedLength, ByteBuffer output, int size) {
+        if (encodedImage == null || !encodedImage.isDirect() || output == null || !output.isDirect()) {
+            throw new IllegalArgumentException("encodedImage and output must be direct ByteBuffers");
+        }
+        if (!INTO_SUPPORTED) {
+            preprocessLegacyInto(encodedImage, encodedLength, output, size);
+            return;
+        }
+
+        int status = preprocessToCHWInto(
+                encodedImage, encodedLength,
+                output,
+                size, size,
+                0.485f, 0.456f, 0.406f,  // ImageNet mean
+                0.229f, 0.224f, 0.225f   // ImageNet std
+        );
+        checkStatus(status);
+    }
+
+    /**
+     * 旧版库只有 preprocessToCHWNative：按有效长度切片传入（Native 侧以缓冲区容量为数据长度），
+     * 返回的 float[] 再拷贝到 output
+     */
+    private void preprocessLegacyInto(ByteBuffer encodedImage, int encodedLength, ByteBuffer output, int size) {
+        if (size > LEGACY_MAX_SIZE) {
+            throw new IllegalArgumentException("Native library only supports image sizes up to "
+                    + LEGACY_MAX_SIZE + ", got " + size);
+        }
+        float[] chw = preprocessToCHWNative(
+                encodedImage.slice(0, encodedLength),
+                size, size,
+                0.485f, 0.456f, 0.406f,  // ImageNet mean
+                0.229f, 0.224f, 0.225f   // ImageNet std
+        );
+        if (chw == null) {
+            throw new BusinessException(ErrorCodes.FILE_ERROR, "Native preprocessing failed to decode image");
+        }
+        output.duplicate().order(ByteOrder.nativeOrder()).asFloatBuffer().put(chw);
+    }
+
+    /**
+     * 批量预处理：一次 JNI 调用完成 N 张图片的解码与归一化，解码/缩放在 Native 线程池上并行执行。
+     *
+     * @param encodedImages  每张图片的编码数据（DirectByteBuffer，数据从下标 0 开始）
+     * @param encodedLengths 每张图片的有效字节数
+     * @param output         本机字节序的 DirectByteBuffer，按 [N, 3, outH, outW] 连续存放
+     * @param statuses       输出参数：每张图片的状态码
+     * @return 失败的图片数量；参数整体非法时返回负的状态码
+     */
+    public native int preprocessBatchInto(
+            ByteBuffer[] encodedImages, int[] encodedLengths,
+            ByteBuffer output, int[] statuses,
+            int outW, int outH,
+            float mean0, float mean1, float mean2,
+            float std0, float std1, float std2
+    );
+
+    /**
+     * 设置批量预处理线程池宽度（不含调用线程），0 表示只在调用线程上串行处理
+     */
+    public static native void setThreadPoolSize(int threads);
+
+    /**
+     * 设置批量预处理线程池宽度；库中没有 Native 线程池（逐张处理）时返回 false
+     */
+    public static boolean configureThreadPool(int threads) {
+        return BATCH_SUPPORTED && isLinked(() -> setThreadPoolSize(threads));
+    }
+
+    /**
+     * 便捷方法：使用 ImageNet 标准归一化参数批量预处理，返回每张图片的状态码
+     */
+    public int[] preprocessImageNetBatchInto(ByteBuffer[] encodedImages, int[] encodedLengths,
+                                             ByteBuffer output, int size) {
+        int[] statuses = new int[encodedImages.length];
+        if (!BATCH_SUPPORTED) {
+            // 旧版库没有批量入口，在调用线程上逐张处理，结果写入各自的位置
+            int bytesPerImage = 3 * size * size * Float.BYTES;
+            for (int i = 0; i < encodedImages.length; i++) {
+                try {
+                    preprocessImageNetCHWInto(encodedImages[i], encodedLengths[i],
+                            output.slice(i * bytesPerImage, bytesPerImage).order(output.order()), size);
+                } catch (BusinessException e) {
+                    statuses[i] = STATUS_DECODE_FAILED;
+                } catch (IllegalArgumentException e) {
+                    statuses[i] = STATUS_INVALID_ARGUMENT;
+                }
+            }
+            return statuses;
+        }
+        int failed = preprocessBatchInto(
+                encodedImages, encodedLengths,
+                output, statuses,
+                size, size,
+                0.485f, 0.456f, 0.406f,  // ImageNet mean
+                0.229f, 0.224f, 0.225f   // ImageNet std
+        );
+        if (failed < 0) {
+            checkStatus(failed);
+        }
+        return statuses;
+    }
+
+    /**
+     * 参考实现的 ImageNet 便捷方法，见 {@link #preprocessToCHWReferenceInto}
+     */
+    public void preprocessImageNetCHWReferenceInto(ByteBuffer encodedImage, int encodedLength, ByteBuffer output, int size) {
+        if (!REFERENCE_SUPPORTED) {
+            throw new UnsupportedOperationException("Native library does not include the reference preprocessor");
+        }
+        checkStatus(preprocessToCHWReferenceInto(
+                encodedImage, encodedLength,
+                output,
+                size, size,
+                0.485f, 0.456f, 0.406f,
+                0.229f, 0.224f, 0.225f
+        ));
+    }
+
+    /**
+     * 非 {@link #STATUS_OK} 时抛出对应异常
+     */
+    public static void checkStatus(int status) {
+        switch (status) {
+            case STATUS_OK -> { }
+            case STATUS_DECODE_FAILED ->
+                    throw new BusinessException(ErrorCodes.FILE_ERROR, "Native preprocessing failed to decode image");
+            case STATUS_INVALID_ARGUMENT, STATUS_OUTPUT_TOO_SMALL ->
+                    throw new IllegalArgumentException("Native preprocessing rejected arguments, status=" + status);
+            default ->
+                    throw new RuntimeException("Native preprocessing failed, status=" + status);
+        }
+    }
+
     /**
      * 便捷方法：使用 ImageNet 标准归一化参数
      */
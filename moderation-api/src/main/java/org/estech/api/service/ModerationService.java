@@ -2,83 +2,108 @@ package org.estech.api.service;
 
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
 import ai.djl.ndarray.types.Shape;
 import lombok.extern.slf4j.Slf4j;
+import org.estech.api.jni.NativeBufferArena;
 import org.estech.api.jni.NativeImageOps;
+import org.estech.common.cache.ClassificationCache;
+import org.estech.common.constants.ErrorCodes;
 import org.estech.common.dto.ClassificationResult;
+import org.estech.common.exception.BusinessException;
+import org.estech.model.core.ModelHandle;
 import org.estech.model.service.ModelService;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.estech.common.constants.ModelConstants;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
 
 @Service
 @Slf4j
 public class ModerationService {
 
-    private final ModelService modelService = new ModelService();
+    /** Java 与 Native 预处理结果略有差异，缓存 key 中的模型标识加后缀分开缓存 */
+    private static final String NATIVE_SUFFIX = "-native";
+
+    private final ModelService modelService;
+    private final ClassificationCache cache;
 
     private final NativeImageOps nativeOps = new NativeImageOps();
 
-    public ClassificationResult classify(MultipartFile file, int topK) throws Exception {
+    @Value("${native.preprocess.max-batch:32}")
+    private int maxNativeBatch;
+
+    public ModerationService(ModelService modelService, ClassificationCache cache) {
+        this.modelService = modelService;
+        this.cache = cache;
+    }
+
+    public ClassificationResult classify(MultipartFile file, String model, int topK) throws Exception {
         try {
             // 直接从 MultipartFile 读取字节数组
             byte[] bytes = file.getBytes();
 
-            // 调用底层模型服务
-            try (InputStream input = new ByteArrayInputStream(bytes)) {
-                return modelService.classify(input, topK);
+            // 先查缓存，未命中再调用底层模型服务；缓存 key 与推理使用同一个模型句柄，热替换时不会错记版本
+            try (ModelHandle handle = modelService.acquire(model)) {
+                return cache.get(bytes, handle.getDefinition().getId(), topK, () -> {
+                    try (InputStream input = new ByteArrayInputStream(bytes)) {
+                        return modelService.classify(handle, input, topK);
+                    }
+                });
             }
 
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to classify image: {}", e.getMessage(), e);
             throw new RuntimeException("Image classification failed", e);
         }
     }
 
-    public ClassificationResult classifyNative(MultipartFile file, int topK) throws Exception {
-        log.info("Processing image with native preprocessing: {}, topK={}",
-                file.getOriginalFilename(), topK);
+    public ClassificationResult classifyNative(MultipartFile file, String model, int topK) throws Exception {
+        log.info("Processing image with native preprocessing: {}, model={}, topK={}",
+                file.getOriginalFilename(), model, topK);
 
-        // 1. 读取上传文件到 DirectByteBuffer
-        byte[] imageBytes = file.getBytes();
-        ByteBuffer encodedImage = ByteBuffer.allocateDirect(imageBytes.length);
-        encodedImage.put(imageBytes);
-        encodedImage.flip();
+        NativeBufferArena arena = NativeBufferArena.current();
 
-        log.info("Image loaded: {} bytes", imageBytes.length);
-
-        // 2. 调用 Native 方法预处理
-        float[] chwData = nativeOps.preprocessImageNetCHW(
-                encodedImage,
-                ModelConstants.IMAGE_SIZE
-        );
+        // 1. 上传文件直接读入线程复用的 DirectByteBuffer，不经过 byte[]
+        int length = Math.toIntExact(file.getSize());
+        ByteBuffer encodedImage = arena.input(length);
+        try (ReadableByteChannel channel = Channels.newChannel(file.getInputStream())) {
+            while (encodedImage.hasRemaining() && channel.read(encodedImage) >= 0) {
+                // 读满为止
+            }
+        }
 
-        // 3. 验证数据
-        NativeImageOps.validateAndPrintStats(chwData, "Native preprocessed data");
+        log.info("Image loaded: {} bytes", encodedImage.position());
 
-        if (chwData == null) {
-            throw new RuntimeException("Native preprocessing returned null");
+        // 相同图片直接返回缓存结果，跳过预处理与推理
+        int loaded = encodedImage.position();
+        try (ModelHandle handle = modelService.acquire(model)) {
+            return cache.get(encodedImage.duplicate().flip(), handle.getDefinition().getId() + NATIVE_SUFFIX, topK,
+                    () -> preprocessAndClassify(encodedImage, loaded, arena, handle, topK));
         }
+    }
 
-        int expectedSize = 3 * ModelConstants.IMAGE_SIZE * ModelConstants.IMAGE_SIZE;
-        if (chwData.length != expectedSize) {
-            throw new RuntimeException(
-                    String.format("Invalid array size: expected %d, got %d",
-                            expectedSize, chwData.length));
-        }
+    private ClassificationResult preprocessAndClassify(ByteBuffer encodedImage, int length, NativeBufferArena arena,
+                                                       ModelHandle handle, int topK) throws Exception {
+        int size = handle.getDefinition().getImageSize();
 
-        // 4. 转换为 NDArray 并预测
+        // 2. 调用 Native 方法预处理，CHW 结果直接写入线程复用的输出缓冲区
+        ByteBuffer chw = arena.output(3 * size * size);
+        nativeOps.preprocessImageNetCHWInto(encodedImage, length, chw, size);
+
+        // 3. 包装为 NDArray（DirectByteBuffer 不拷贝）并预测
         try (NDManager manager = NDManager.newBaseManager()) {
             // 创建 NDArray: shape = [3, H, W]
-            NDArray array = manager.create(chwData,
-                    new Shape(3, ModelConstants.IMAGE_SIZE, ModelConstants.IMAGE_SIZE));
+            NDArray array = manager.create(chw, new Shape(3, size, size), DataType.FLOAT32);
 
             log.info("NDArray created: shape={}, dataType={}",
                     array.getShape(), array.getDataType());
@@ -86,12 +111,9 @@ public class ModerationService {
             // 验证 NDArray 数据
             validateNDArray(array);
 
-            // 5. 添加 batch 维度: [3, H, W] -> [1, 3, H, W]
-//            NDArray batched = array.expandDims(0);
-//            log.info("Batched NDArray shape: {}", batched.getShape());
-
-            // 6. 使用 ModelService 进行预测
-            ClassificationResult result = modelService.classifyNDArray(array, topK);
+            // 4. 使用 ModelService 进行预测（Batchifier.STACK 会添加 batch 维度）；
+            //    返回（包括超时）时批处理器已不再引用 chw，之后释放 manager、下一个请求复用缓冲区都是安全的
+            ClassificationResult result = modelService.classifyNDArray(handle, array, topK);
 
             log.info("Classification completed. Top prediction: {} (confidence: {})",
                     result.getLabel(), result.getConfidence());
@@ -100,6 +122,68 @@ public class ModerationService {
         }
     }
 
+    /**
+     * 批量 Native 预处理 + 批量推理：一次 JNI 调用完成所有图片的解码/归一化，再一次 batchPredict
+     */
+    public List<ClassificationResult> classifyNativeBatch(List<MultipartFile> files, String model, int topK) throws Exception {
+        if (files.isEmpty()) {
+            return List.of();
+        }
+        if (files.size() > maxNativeBatch) {
+            throw new BusinessException(ErrorCodes.INVALID_REQUEST,
+                    "Too many images in one batch: " + files.size() + " > " + maxNativeBatch);
+        }
+
+        try (ModelHandle handle = modelService.acquire(model)) {
+            return classifyNativeBatch(files, handle, topK);
+        }
+    }
+
+    private List<ClassificationResult> classifyNativeBatch(List<MultipartFile> files, ModelHandle handle, int topK) throws Exception {
+        int n = files.size();
+        int size = handle.getDefinition().getImageSize();
+        NativeBufferArena arena = NativeBufferArena.current();
+
+        // 1. 所有图片读入同一块 DirectByteBuffer，再按图片切片
+        long total = 0;
+        for (MultipartFile file : files) {
+            total += file.getSize();
+        }
+        ByteBuffer encoded = arena.input(Math.toIntExact(total));
+        ByteBuffer[] slices = new ByteBuffer[n];
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            MultipartFile file = files.get(i);
+            int start = encoded.position();
+            try (ReadableByteChannel channel = Channels.newChannel(file.getInputStream())) {
+                while (encoded.position() - start < file.getSize() && channel.read(encoded) >= 0) {
+                    // 读满为止
+                }
+            }
+            lengths[i] = encoded.position() - start;
+            slices[i] = encoded.slice(start, lengths[i]);
+        }
+
+        // 2. 一次 JNI 调用，Native 线程池并行解码，结果按 [N, 3, H, W] 连续写入
+        ByteBuffer chw = arena.output(n * 3 * size * size);
+        int[] statuses = nativeOps.preprocessImageNetBatchInto(slices, lengths, chw, size);
+        for (int i = 0; i < n; i++) {
+            if (statuses[i] != NativeImageOps.STATUS_OK) {
+                throw new BusinessException(ErrorCodes.FILE_ERROR, String.format(
+                        "Native preprocessing failed for image %d (%s), status=%d",
+                        i, files.get(i).getOriginalFilename(), statuses[i]));
+            }
+        }
+
+        // 3. 包装为 [N, 3, H, W] NDArray 并批量预测
+        try (NDManager manager = NDManager.newBaseManager()) {
+            NDArray batch = manager.create(chw, new Shape(n, 3, size, size), DataType.FLOAT32);
+            List<ClassificationResult> results = modelService.classifyNDArrayBatch(handle, batch, topK);
+            log.info("Native batch classification completed: {} image(s)", n);
+            return results;
+        }
+    }
+
     /**
      * 验证 NDArray 数据有效性
      */
@@ -119,16 +203,19 @@ public class ModerationService {
         }
     }
 
-    @Async("aiTaskExecutor")
-    public CompletableFuture<ClassificationResult> classifyAsync(MultipartFile file, int topK) throws Exception {
-        return CompletableFuture.supplyAsync(() -> {
-                    try {
-                        return classify(file, topK);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                },
-                Executors.newCachedThreadPool());
+    /**
+     * 在请求线程上读取与解码，推理交给 ModelService（启用批处理时与其他请求合批），直接返回其 future，
+     * 等待推理期间不占用任何线程
+     */
+    public CompletableFuture<ClassificationResult> classifyAsync(MultipartFile file, String model, int topK) throws Exception {
+        byte[] bytes = file.getBytes();
+        // 推理期间 ModelService 另持有句柄的引用，这里查完缓存即可归还
+        try (ModelHandle handle = modelService.acquire(model)) {
+            return cache.getAsync(bytes, handle.getDefinition().getId(), topK, () -> {
+                try (InputStream input = new ByteArrayInputStream(bytes)) {
+                    return modelService.classifyAsync(handle, input, topK);
+                }
+            });
+        }
     }
 }
-
@@ -0,0 +1,34 @@
+package org.estech.flux.config;
+
+import org.estech.common.cache.ClassificationCache;
+import org.estech.common.cache.ClassificationCacheConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    @Value("${cache.classification.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.classification.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${cache.classification.max-bytes:0}")
+    private long maxBytes;
+
+    @Value("${cache.classification.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${cache.classification.await-timeout:10s}")
+    private Duration awaitTimeout;
+
+    @Bean
+    public ClassificationCache classificationCache() {
+        return new ClassificationCache("classification",
+                new ClassificationCacheConfig(enabled, maxEntries, maxBytes, ttl, awaitTimeout));
+    }
+}
@@ -0,0 +1,61 @@
+package org.estech.flux.config;
+
+import org.estech.model.core.BatcherConfig;
+import org.estech.model.core.ModelManager;
+import org.estech.model.core.PredictorPoolConfig;
+import org.estech.model.service.ModelService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ModelConfig {
+
+    @Value("${model.pool.size:0}")
+    private int poolSize;
+
+    @Value("${model.pool.borrow-timeout-ms:5000}")
+    private long borrowTimeoutMs;
+
+    @Value("${model.pool.thread-affinity:false}")
+    private boolean threadAffinity;
+
+    @Value("${model.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${model.batch.max-size:8}")
+    private int batchMaxSize;
+
+    @Value("${model.batch.max-delay-ms:5}")
+    private long batchMaxDelayMs;
+
+    @Value("${model.batch.queue-capacity:256}")
+    private int batchQueueCapacity;
+
+    @Value("${model.batch.workers:1}")
+    private int batchWorkers;
+
+    @Value("${model.registry.catalog:" + ModelManager.DEFAULT_CATALOG + "}")
+    private String catalog;
+
+    @Value("${model.pytorch.num-threads:0}")
+    private int pytorchThreads;
+
+    @Value("${model.pytorch.num-interop-threads:0}")
+    private int pytorchInteropThreads;
+
+    /**
+     * 所有请求共享同一个 ModelService（及其背后的模型注册表、Predictor 池与批处理器）
+     */
+    @Bean
+    public ModelService modelService() throws Exception {
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ModelManager.configurePool(new PredictorPoolConfig(size, borrowTimeoutMs, threadAffinity));
+        ModelManager.configureBatching(new BatcherConfig(batchEnabled, batchMaxSize, batchMaxDelayMs,
+                batchQueueCapacity, batchWorkers));
+        // 先注册模型目录（不加载权重），线程数按各模型实际的并发推理数计算
+        ModelManager.loadCatalog(catalog);
+        ModelManager.configurePyTorchThreads(pytorchThreads, pytorchInteropThreads);
+        return new ModelService();
+    }
+}
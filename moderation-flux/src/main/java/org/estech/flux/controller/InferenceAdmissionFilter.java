@@ -0,0 +1,78 @@
+package org.estech.flux.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.dto.ErrorResponse;
+import org.estech.common.exception.BusinessException;
+import org.estech.flux.service.InferenceScheduler;
+import org.estech.model.service.ModelService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * 推理入口的准入检查：推理调度器队列已满，或目标模型的批处理队列已满时，直接返回 503 + Retry-After。
+ * 启用批处理时调度器线程只做解码并提交，积压实际发生在批处理队列中，两处都要检查。
+ * 目标模型取查询参数 model（classify-bulk），没有时为默认模型（classify 的 model 在表单中，此时还读不到）。
+ * <p>
+ * 放在 WebFilter 中而不是控制器里，是因为 {@code @RequestPart FilePart} 参数在进入控制器之前
+ * 已经通过 getMultipartData 解析了整个表单；在这里拒绝时请求体还没有被读取。
+ */
+@Component
+@RequiredArgsConstructor
+public class InferenceAdmissionFilter implements WebFilter {
+
+    private static final Set<String> PATHS = Set.of("/flux/moderation/classify", "/flux/moderation/classify-bulk");
+
+    private final InferenceScheduler inferenceScheduler;
+    private final ModelService modelService;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!HttpMethod.POST.equals(exchange.getRequest().getMethod())
+                || !PATHS.contains(exchange.getRequest().getPath().pathWithinApplication().value())
+                || !isSaturated(exchange)) {
+            return chain.filter(exchange);
+        }
+        meterRegistry.counter("model.inference.shed").increment();
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(
+                    new ErrorResponse(ErrorCodes.SERVICE_BUSY, "Inference queue is full", null));
+        } catch (JsonProcessingException e) {
+            body = new byte[0];
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    private boolean isSaturated(ServerWebExchange exchange) {
+        if (inferenceScheduler.isSaturated()) {
+            return true;
+        }
+        try {
+            return modelService.isSaturated(exchange.getRequest().getQueryParams().getFirst("model"));
+        } catch (BusinessException e) {
+            // 未知模型交给控制器按原有方式报错
+            return false;
+        }
+    }
+}
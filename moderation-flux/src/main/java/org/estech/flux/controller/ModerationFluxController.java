@@ -4,12 +4,23 @@ package org.estech.flux.controller;
 import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.estech.common.constants.ErrorCodes;
 import org.estech.common.dto.ClassificationResult;
+import org.estech.common.dto.ErrorResponse;
+import org.estech.common.exception.BusinessException;
+import org.estech.flux.model.BulkClassificationRequest;
+import org.estech.flux.model.BulkClassificationResult;
+import org.estech.flux.service.BulkClassificationService;
 import org.estech.flux.service.ModerationFluxService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.http.codec.multipart.FormFieldPart;
+import org.springframework.http.codec.multipart.Part;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.concurrent.TimeUnit;
@@ -19,19 +30,25 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class ModerationFluxController {
     private final ModerationFluxService service;
+    private final BulkClassificationService bulkService;
     private final MeterRegistry meterRegistry;
 
     @Timed(value = "model.inference.time", description = "Time taken for model inference")
     @PostMapping(value = "/classify", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public Mono<ClassificationResult> classify(@RequestPart("file") FilePart file,
-                                               @RequestPart(value = "topK", required = false) Mono<FormFieldPart> topKPart) {
+                                               @RequestPart(value = "topK", required = false) Mono<FormFieldPart> topKPart,
+                                               @RequestPart(value = "model", required = false) Mono<FormFieldPart> modelPart) {
+        // 推理队列已满时在读取请求体之前由 InferenceAdmissionFilter 返回 503
         long start = System.nanoTime();
 
+        // model 未指定时使用默认模型
+        Mono<String> model = modelPart.map(FormFieldPart::value).defaultIfEmpty("");
         return topKPart
                 .map(FormFieldPart::value)
                 .map(Integer::parseInt)
                 .defaultIfEmpty(5)
-                .flatMap(topK -> service.classify(file, topK))
+                .zipWith(model)
+                .flatMap(tuple -> service.classify(file, tuple.getT2().isEmpty() ? null : tuple.getT2(), tuple.getT1()))
                 .doOnSuccess(result -> meterRegistry.counter("model.inference.success").increment())
                 .doOnError(err -> meterRegistry.counter("model.inference.error").increment())
                 .doFinally(signal -> {
@@ -39,4 +56,50 @@ public class ModerationFluxController {
                     meterRegistry.timer("model.inference.latency").record(duration, TimeUnit.NANOSECONDS);
                 });
     }
+
+    /**
+     * 批量分类 multipart 中的全部文件（字段名不限），每张图片完成后立即返回一条结果，
+     * 按 Accept 输出 NDJSON 或 SSE；ordered=true 时按上传顺序返回
+     */
+    @PostMapping(value = "/classify-bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<BulkClassificationResult> classifyBulk(@RequestBody Flux<Part> parts,
+                                                       @RequestParam(defaultValue = "5") int topK,
+                                                       @RequestParam(required = false) String model,
+                                                       @RequestParam(defaultValue = "false") boolean ordered,
+                                                       @RequestParam(required = false) Integer parallelism) {
+        Flux<FilePart> files = parts.filter(FilePart.class::isInstance).cast(FilePart.class);
+        return countResults(bulkService.classifyFiles(files, model, topK, parallelism, ordered));
+    }
+
+    /**
+     * 批量分类本地存储中的对象（键相对于 moderation.bulk.storage-root）
+     */
+    @PostMapping(value = "/classify-bulk", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<BulkClassificationResult> classifyBulkKeys(@RequestBody BulkClassificationRequest request) {
+        return countResults(bulkService.classifyKeys(request.getKeys(), request.getModel(),
+                request.getTopK() != null ? request.getTopK() : 5, request.getParallelism(), request.isOrdered()));
+    }
+
+    private Flux<BulkClassificationResult> countResults(Flux<BulkClassificationResult> results) {
+        return results.doOnNext(result -> meterRegistry
+                .counter(result.result() != null ? "model.inference.success" : "model.inference.error")
+                .increment());
+    }
+
+    /**
+     * 推理队列已满、模型池借用超时返回 503 并提示稍后重试，请求参数错误返回 400，其他业务错误返回 500
+     */
+    @ExceptionHandler(BusinessException.class)
+    public ResponseEntity<ErrorResponse> handleBusinessException(BusinessException e) {
+        if (ErrorCodes.SERVICE_BUSY.equals(e.getCode())) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new ErrorResponse(e.getCode(), e.getMessage(), null));
+        }
+        HttpStatus status = ErrorCodes.INVALID_REQUEST.equals(e.getCode())
+                ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR;
+        return ResponseEntity.status(status).body(new ErrorResponse(e.getCode(), e.getMessage(), null));
+    }
 }
@@ -0,0 +1,19 @@
+package org.estech.flux.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 按对象键批量分类：键相对于 moderation.bulk.storage-root 解析
+ */
+@Data
+public class BulkClassificationRequest {
+    private List<String> keys;
+    private Integer topK;
+    private String model;
+    /** true 时按请求顺序返回，否则按完成顺序返回 */
+    private boolean ordered;
+    /** 同时推理的图片数，null 使用 moderation.bulk.parallelism */
+    private Integer parallelism;
+}
@@ -0,0 +1,23 @@
+package org.estech.flux.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.estech.common.dto.ClassificationResult;
+
+/**
+ * 批量分类中一张图片的结果，成功时带 result，失败时带 errorCode 与 error，不影响其他图片
+ *
+ * @param index 图片在请求中的位置（从 0 开始）
+ * @param name  文件名或对象键
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkClassificationResult(int index, String name, ClassificationResult result,
+                                       String errorCode, String error) {
+
+    public static BulkClassificationResult success(int index, String name, ClassificationResult result) {
+        return new BulkClassificationResult(index, name, result, null, null);
+    }
+
+    public static BulkClassificationResult failure(int index, String name, String errorCode, String error) {
+        return new BulkClassificationResult(index, name, null, errorCode, error);
+    }
+}
@@ -0,0 +1,129 @@
+package org.estech.flux.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.exception.BusinessException;
+import org.estech.flux.model.BulkClassificationResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 批量分类：一次请求中的多张图片以有限并行度提交给 {@link ModerationFluxService}，
+ * 每张图片完成后立即作为一条结果发出（NDJSON/SSE 由控制器按 Accept 编码）。
+ * <p>
+ * 同时在途的图片在 ModelService 中与其他请求合批推理；推理队列已满时单张图片退避重试，
+ * 仍失败的图片以错误结果返回，不中断整个批次。
+ */
+@Slf4j
+@Service
+public class BulkClassificationService {
+
+    private static final int BUSY_RETRIES = 5;
+    private static final Duration BUSY_BACKOFF = Duration.ofMillis(50);
+
+    private final ModerationFluxService moderationService;
+    private final int defaultParallelism;
+    private final int maxParallelism;
+    private final int maxKeys;
+    private final Path storageRoot;
+
+    public BulkClassificationService(ModerationFluxService moderationService,
+                                     @Value("${moderation.bulk.parallelism:8}") int defaultParallelism,
+                                     @Value("${moderation.bulk.max-parallelism:32}") int maxParallelism,
+                                     @Value("${moderation.bulk.max-keys:1000}") int maxKeys,
+                                     @Value("${moderation.bulk.storage-root:}") String storageRoot) {
+        this.moderationService = moderationService;
+        this.defaultParallelism = defaultParallelism;
+        this.maxParallelism = maxParallelism;
+        this.maxKeys = maxKeys;
+        this.storageRoot = storageRoot.isBlank() ? null : Path.of(storageRoot).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 分类 multipart 请求中的全部文件，按文件出现的顺序编号
+     */
+    public Flux<BulkClassificationResult> classifyFiles(Flux<FilePart> files, String model, int topK,
+                                                        Integer parallelism, boolean ordered) {
+        return classifyAll(files.index().map(indexed -> new BulkImage(indexed.getT1().intValue(),
+                        indexed.getT2().filename(), moderationService.readBytes(indexed.getT2()))),
+                model, topK, parallelism, ordered);
+    }
+
+    /**
+     * 分类本地存储中的对象，键相对于 storage-root 解析，不允许越出该目录
+     */
+    public Flux<BulkClassificationResult> classifyKeys(List<String> keys, String model, int topK,
+                                                       Integer parallelism, boolean ordered) {
+        if (storageRoot == null) {
+            throw new BusinessException(ErrorCodes.INVALID_REQUEST, "Local storage is not configured");
+        }
+        if (keys == null || keys.isEmpty()) {
+            throw new BusinessException(ErrorCodes.INVALID_REQUEST, "keys is empty");
+        }
+        if (keys.size() > maxKeys) {
+            throw new BusinessException(ErrorCodes.INVALID_REQUEST, "Too many keys, max " + maxKeys);
+        }
+        return classifyAll(Flux.range(0, keys.size()).map(i -> new BulkImage(i, keys.get(i), read(keys.get(i)))),
+                model, topK, parallelism, ordered);
+    }
+
+    private Flux<BulkClassificationResult> classifyAll(Flux<BulkImage> images, String model, int topK,
+                                                       Integer parallelism, boolean ordered) {
+        int concurrency = Math.max(1, Math.min(parallelism != null ? parallelism : defaultParallelism, maxParallelism));
+        return ordered
+                ? images.flatMapSequential(image -> classify(image, model, topK), concurrency)
+                : images.flatMap(image -> classify(image, model, topK), concurrency);
+    }
+
+    private Mono<BulkClassificationResult> classify(BulkImage image, String model, int topK) {
+        return image.content()
+                .switchIfEmpty(Mono.error(new BusinessException(ErrorCodes.FILE_ERROR, "Empty file")))
+                .flatMap(bytes -> moderationService.classify(bytes, model, topK)
+                        .retryWhen(Retry.backoff(BUSY_RETRIES, BUSY_BACKOFF)
+                                .filter(BulkClassificationService::isBusy)
+                                .onRetryExhaustedThrow((spec, signal) -> signal.failure())))
+                .map(result -> BulkClassificationResult.success(image.index(), image.name(), result))
+                .onErrorResume(e -> Mono.just(toFailure(image, e)));
+    }
+
+    private Mono<byte[]> read(String key) {
+        return Mono.fromCallable(() -> {
+            Path path = storageRoot.resolve(key).normalize();
+            if (!path.startsWith(storageRoot)) {
+                throw new BusinessException(ErrorCodes.INVALID_REQUEST, "Invalid key: " + key);
+            }
+            return Files.readAllBytes(path);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static BulkClassificationResult toFailure(BulkImage image, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof BusinessException e) {
+            return BulkClassificationResult.failure(image.index(), image.name(), e.getCode(), e.getMessage());
+        }
+        if (cause instanceof NoSuchFileException) {
+            return BulkClassificationResult.failure(image.index(), image.name(), ErrorCodes.FILE_ERROR, "Not found");
+        }
+        log.warn("Bulk classification of [{}] failed", image.name(), cause);
+        return BulkClassificationResult.failure(image.index(), image.name(), ErrorCodes.INTERNAL_ERROR, cause.toString());
+    }
+
+    private static boolean isBusy(Throwable e) {
+        return e instanceof BusinessException b && ErrorCodes.SERVICE_BUSY.equals(b.getCode());
+    }
+
+    private record BulkImage(int index, String name, Mono<byte[]> content) {
+    }
+}
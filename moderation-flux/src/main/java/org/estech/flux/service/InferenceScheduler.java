@@ -0,0 +1,118 @@
+package org.estech.flux.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.estech.common.constants.ErrorCodes;
+import org.estech.common.exception.BusinessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 推理专用的调度器：固定线程数（默认 CPU 核数）+ 有界提交队列，代替无上限的 boundedElastic。
+ * <p>
+ * 任务在线程上完成哈希、解码并提交推理（未启用批处理时推理本身也在该线程上），队列满时立即以
+ * SERVICE_BUSY 拒绝，由入口返回 503，而不是让排队无限增长、所有请求一起变慢。
+ * 指标：moderation.inference.queue.wait（等待推理线程）、moderation.inference.execution（在推理线程上的时间）、
+ * moderation.inference.rejected、moderation.inference.queue.depth、moderation.inference.active。
+ * 启用批处理时，之后在批处理队列中的等待与批推理时间分别见 model.batch.queue.wait 与 model.batch.inference。
+ */
+@Slf4j
+@Component
+public class InferenceScheduler {
+
+    private final ThreadPoolExecutor executor;
+    private final Timer queueWait;
+    private final Timer execution;
+    private final Counter rejected;
+
+    public InferenceScheduler(@Value("${moderation.inference.threads:0}") int threads,
+                              @Value("${moderation.inference.queue-capacity:64}") int queueCapacity,
+                              MeterRegistry registry) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "inference-" + index.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.queueWait = Timer.builder("moderation.inference.queue.wait")
+                .description("Time a request waits for an inference thread")
+                .register(registry);
+        this.execution = Timer.builder("moderation.inference.execution")
+                .description("Time a request spends on an inference thread (decode and submit, or the whole inference without batching)")
+                .register(registry);
+        this.rejected = Counter.builder("moderation.inference.rejected")
+                .description("Requests rejected because the inference queue was full")
+                .register(registry);
+        Gauge.builder("moderation.inference.queue.depth", executor, e -> e.getQueue().size()).register(registry);
+        Gauge.builder("moderation.inference.active", executor, ThreadPoolExecutor::getActiveCount).register(registry);
+
+        log.info("Inference scheduler: threads={}, queueCapacity={}", size, queueCapacity);
+    }
+
+    /**
+     * 队列已满，新提交的任务会被拒绝；入口据此在读取请求体之前拒绝请求
+     */
+    public boolean isSaturated() {
+        return executor.getQueue().remainingCapacity() == 0;
+    }
+
+    /**
+     * 在推理线程上执行 task，task 返回的 future 完成时发出结果；队列已满时以 SERVICE_BUSY 失败。
+     * 订阅被取消（客户端断开）时，尚在排队的任务直接从队列移除。
+     */
+    public <T> Mono<T> submit(Callable<CompletableFuture<T>> task) {
+        return Mono.create(sink -> {
+            long enqueued = System.nanoTime();
+            FutureTask<Void> runnable = new FutureTask<>(() -> {
+                long started = System.nanoTime();
+                queueWait.record(started - enqueued, TimeUnit.NANOSECONDS);
+                CompletableFuture<T> future;
+                try {
+                    future = task.call();
+                } catch (Throwable t) {
+                    sink.error(t);
+                    return null;
+                } finally {
+                    execution.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+                future.whenComplete((result, error) -> {
+                    if (error != null) {
+                        sink.error(error);
+                    } else {
+                        sink.success(result);
+                    }
+                });
+                return null;
+            });
+            sink.onCancel(() -> executor.remove(runnable));
+            try {
+                executor.execute(runnable);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                sink.error(new BusinessException(ErrorCodes.SERVICE_BUSY, "Inference queue is full"));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,48 +1,69 @@
 package org.estech.flux.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.estech.common.cache.ClassificationCache;
 import org.estech.common.dto.ClassificationResult;
+import org.estech.model.core.ModelHandle;
 import org.estech.model.service.ModelService;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class ModerationFluxService {
 
-    private final ModelService modelService = new ModelService();
+    private final ModelService modelService;
+    private final ClassificationCache cache;
+    private final InferenceScheduler inferenceScheduler;
 
-    public Mono<ClassificationResult> classify(FilePart file, int topK) {
-        return DataBufferUtils.join(file.content())  // 合并所有 DataBuffer
-                .flatMap(dataBuffer -> {
+    /**
+     * @param model 模型名称，null 表示默认模型
+     */
+    public Mono<ClassificationResult> classify(FilePart file, String model, int topK) {
+        return readBytes(file).flatMap(bytes -> classify(bytes, model, topK));
+    }
+
+    /**
+     * 先查缓存（哈希与解码在推理调度器上），未命中再交给 ModelService（启用批处理时与其他请求合批）。
+     * 缓存 key 与推理使用同一个模型句柄，热替换时不会把新版本的结果记在旧版本名下
+     */
+    public Mono<ClassificationResult> classify(byte[] bytes, String model, int topK) {
+        return inferenceScheduler.submit(() -> {
+            try (ModelHandle handle = modelService.acquire(model)) {
+                return cache.getAsync(bytes, handle.getDefinition().getId(), topK, () -> {
+                    try (InputStream input = new ByteArrayInputStream(bytes)) {
+                        return modelService.classifyAsync(handle, input, topK);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 合并文件的所有 DataBuffer 并复制为 byte[]
+     */
+    public Mono<byte[]> readBytes(FilePart file) {
+        return DataBufferUtils.join(file.content())
+                .map(dataBuffer -> {
                     try {
-                        // 读取所有字节
                         byte[] bytes = new byte[dataBuffer.readableByteCount()];
                         dataBuffer.read(bytes);
+                        return bytes;
+                    } finally {
                         DataBufferUtils.release(dataBuffer);  // 释放资源
-
-                        // 调用 ModelService
-                        return Mono.fromCallable(() -> {
-                            try (InputStream input = new ByteArrayInputStream(bytes)) {
-                                return modelService.classify(input, topK);
-                            }
-                        }).subscribeOn(Schedulers.boundedElastic());
-
-                    } catch (Exception e) {
-                        DataBufferUtils.release(dataBuffer);
-                        return Mono.error(e);
                     }
                 });
     }
 
     public Mono<ClassificationResult> classify(FilePart file) {
-        return classify(file, 5);
+        return classify(file, null, 5);
     }
 
 }